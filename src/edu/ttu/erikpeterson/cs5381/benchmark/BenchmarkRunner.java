@@ -0,0 +1,107 @@
+package edu.ttu.erikpeterson.cs5381.benchmark;
+
+/**
+ * A small timing harness: warms an operation up, then times a number of runs of it and reports the
+ * average and best times. Only the operation is timed, not the setup that feeds it.
+ */
+public class BenchmarkRunner {
+
+    /**
+     * Builds whatever one run of an operation works on
+     */
+    public interface Setup<T>
+    {
+        T create() throws Exception;
+    }
+
+    /**
+     * The code being timed. Return something computed from the work so the JIT can't throw it away.
+     */
+    public interface Operation<T>
+    {
+        Object run(T state) throws Exception;
+    }
+
+    private final int warmupIterations;
+    private final int measuredIterations;
+    private int blackhole;
+
+    /**
+     * Constructor
+     *
+     * @param warmupIterations Untimed runs before measuring
+     * @param measuredIterations Timed runs
+     */
+    public BenchmarkRunner(int warmupIterations, int measuredIterations)
+    {
+        this.warmupIterations = warmupIterations;
+        this.measuredIterations = measuredIterations;
+    }
+
+    /**
+     * Time an operation that needs no setup
+     *
+     * @param name Name to report it under
+     * @param operation Operation to time
+     * @return Average milliseconds per run
+     */
+    public double measure(String name, Operation<Void> operation) throws Exception
+    {
+        return measure(name, () -> null, operation);
+    }
+
+    /**
+     * Time an operation, running the setup (untimed) before each run
+     *
+     * @param name Name to report it under
+     * @param setup Builds the state for each run
+     * @param operation Operation to time
+     * @return Average milliseconds per run
+     */
+    public <T> double measure(String name, Setup<T> setup, Operation<T> operation) throws Exception
+    {
+        for ( int i=0; i<warmupIterations; i++)
+        {
+            consume(operation.run(setup.create()));
+        }
+
+        long total = 0;
+        long best = Long.MAX_VALUE;
+        for ( int i=0; i<measuredIterations; i++)
+        {
+            T state = setup.create();
+            long start = System.nanoTime();
+            Object result = operation.run(state);
+            long elapsed = System.nanoTime() - start;
+            consume(result);
+
+            total += elapsed;
+            best = Math.min(best, elapsed);
+        }
+
+        double average = total / 1_000_000.0 / measuredIterations;
+        System.out.println(String.format("%-40s %12.3f %12.3f", name, average, best / 1_000_000.0));
+        return average;
+    }
+
+    /**
+     * Print the column headings for {@link #measure}
+     */
+    public static void printHeader()
+    {
+        System.out.println(String.format("%-40s %12s %12s", "benchmark", "avg(ms/op)", "best(ms/op)"));
+    }
+
+    private void consume(Object result)
+    {
+        blackhole += result == null ? 0 : result.hashCode();
+    }
+
+    /**
+     * @return Something built from every result, so none of them look unused
+     */
+    public int getBlackhole()
+    {
+        return blackhole;
+    }
+}
@@ -0,0 +1,116 @@
+package edu.ttu.erikpeterson.cs5381.benchmark;
+
+import edu.ttu.erikpeterson.cs5381.parser.SourceFileReader;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Scanner;
+
+/**
+ * Compares the old Scanner-based file read with {@link SourceFileReader} on generated files of a few sizes.
+ *
+ * Usage: FileReadBenchmark [size in KB]...
+ */
+public class FileReadBenchmark {
+
+    private static final int WARMUP_ITERATIONS = 5;
+    private static final int MEASURED_ITERATIONS = 10;
+
+    public static void main(String[] args) throws IOException
+    {
+        int[] sizesInKb = {16, 512, 4096, 32768};
+        if ( args.length > 0)
+        {
+            sizesInKb = new int[args.length];
+            for ( int i=0; i<args.length; i++)
+            {
+                sizesInKb[i] = Integer.parseInt(args[i]);
+            }
+        }
+
+        System.out.println("size(KB)  scanner(ms/op)  sourceFileReader(ms/op)");
+        for ( int sizeInKb : sizesInKb)
+        {
+            File file = writeSourceFile(sizeInKb * 1024L);
+            try
+            {
+                double scannerTime = time(() -> readWithScanner(file));
+                double readerTime = time(() -> SourceFileReader.read(file));
+                System.out.println(String.format("%8d  %14.3f  %23.3f", sizeInKb, scannerTime, readerTime));
+            }
+            finally
+            {
+                file.delete();
+            }
+        }
+    }
+
+    /**
+     * The way CodeBlockParser used to read files (but closing the Scanner)
+     */
+    private static String readWithScanner(File file) throws FileNotFoundException
+    {
+        try ( Scanner scanner = new Scanner(file, StandardCharsets.UTF_8.name()))
+        {
+            return scanner.useDelimiter("\\Z").next();
+        }
+    }
+
+    private interface FileRead
+    {
+        String read() throws FileNotFoundException;
+    }
+
+    /**
+     * @return Average milliseconds per read
+     */
+    private static double time(FileRead fileRead) throws FileNotFoundException
+    {
+        long totalLength = 0;
+        for ( int i=0; i<WARMUP_ITERATIONS; i++)
+        {
+            totalLength += fileRead.read().length();
+        }
+
+        long start = System.nanoTime();
+        for ( int i=0; i<MEASURED_ITERATIONS; i++)
+        {
+            totalLength += fileRead.read().length();
+        }
+        long elapsed = System.nanoTime() - start;
+
+        // Keep the JIT from deciding the reads are unused
+        if ( totalLength == 0)
+        {
+            System.out.println("Nothing read!");
+        }
+        return elapsed / 1_000_000.0 / MEASURED_ITERATIONS;
+    }
+
+    private static File writeSourceFile(long size) throws IOException
+    {
+        File file = File.createTempFile("FileReadBenchmark", ".java");
+        try ( PrintWriter writer = new PrintWriter(file, StandardCharsets.UTF_8.name()))
+        {
+            writer.println("public class Generated {");
+            long written = 0;
+            int methodNumber = 0;
+            while ( written < size)
+            {
+                String method = "    public void method" + methodNumber + "()\n" +
+                                "    {\n" +
+                                "        // Generated method " + methodNumber + "\n" +
+                                "        System.out.println(\"Method " + methodNumber + "\");\n" +
+                                "    }\n";
+                writer.print(method);
+                written += method.length();
+                methodNumber++;
+            }
+            writer.println("}");
+        }
+        return file;
+    }
+}
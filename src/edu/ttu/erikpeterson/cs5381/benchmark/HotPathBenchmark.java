@@ -0,0 +1,243 @@
+package edu.ttu.erikpeterson.cs5381.benchmark;
+
+import edu.ttu.erikpeterson.cs5381.parser.CodeBlockParser;
+import edu.ttu.erikpeterson.cs5381.parser.CodeWalker;
+import edu.ttu.erikpeterson.cs5381.parser.SourceFileReader;
+import edu.ttu.erikpeterson.cs5381.parser.block.CodeBlock;
+import edu.ttu.erikpeterson.cs5381.parser.block.LockInfo;
+import edu.ttu.erikpeterson.cs5381.parser.block.MethodBlock;
+import edu.ttu.erikpeterson.cs5381.parser.block.StatementIndex;
+import edu.ttu.erikpeterson.cs5381.parser.block.SymbolIndex;
+import edu.ttu.erikpeterson.cs5381.parser.lockCheckers.LockFinder;
+import edu.ttu.erikpeterson.cs5381.parser.lockCheckers.LockFinderFactory;
+import edu.ttu.erikpeterson.cs5381.parser.lockCheckers.LockFinderState;
+import edu.ttu.erikpeterson.cs5381.parser.lockCheckers.LockKeywordScanner;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Times the parser's and walker's hot paths one at a time on a generated corpus: parsing, comment removal,
+ * walking the thread starts, the deadlock scan and each lock finder's statement check (plus all of them
+ * together, with and without the keyword prefilter).
+ *
+ * Usage: HotPathBenchmark [file count] [methods per class] [nesting depth] [lock density %] [call fan-out]
+ */
+public class HotPathBenchmark {
+
+    private static final int WARMUP_ITERATIONS = 5;
+    private static final int MEASURED_ITERATIONS = 10;
+
+    public static void main(String[] args) throws Exception
+    {
+        int fileCount = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        int methodsPerClass = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        int nestingDepth = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+        int lockDensity = args.length > 3 ? Integer.parseInt(args[3]) : 20;
+        int callFanOut = args.length > 4 ? Integer.parseInt(args[4]) : 1;
+
+        File directory = new SyntheticCorpus(fileCount, methodsPerClass, nestingDepth, lockDensity, callFanOut).write();
+        try
+        {
+            System.out.println(String.format("%d files, %d methods per class, nesting depth %d, lock density %d%%, call fan-out %d",
+                                             fileCount, methodsPerClass, nestingDepth, lockDensity, callFanOut));
+            run(directory);
+        }
+        finally
+        {
+            SyntheticCorpus.delete(directory);
+        }
+    }
+
+    private static void run(File directory) throws Exception
+    {
+        BenchmarkRunner runner = new BenchmarkRunner(WARMUP_ITERATIONS, MEASURED_ITERATIONS);
+        File[] files = directory.listFiles();
+        if ( files == null)
+        {
+            throw new IllegalStateException("Unable to list " + directory);
+        }
+        Arrays.sort(files);
+
+        List<String> sources = new ArrayList<>();
+        for ( File file : files)
+        {
+            sources.add(SourceFileReader.read(file));
+        }
+
+        BenchmarkRunner.printHeader();
+
+        runner.measure("CodeBlockParser.parse", state -> {
+            int classes = 0;
+            for ( File file : files)
+            {
+                classes += CodeBlockParser.parse(file).size();
+            }
+            return classes;
+        });
+
+        runner.measure("CodeBlockParser.removeAllComments", state -> {
+            int length = 0;
+            for ( String source : sources)
+            {
+                length += CodeBlockParser.removeAllComments(source).length();
+            }
+            return length;
+        });
+
+        // Fresh blocks every time, so this includes working out each method's lock summary
+        runner.measure("MethodBlock.walkMethod (cold)",
+                       () -> new SymbolIndex(CodeBlockParser.parsePath(directory)),
+                       HotPathBenchmark::walkAll);
+
+        // Same blocks and index every time, so the summaries are already there
+        List<CodeBlock> codeBlocks = CodeBlockParser.parsePath(directory);
+        SymbolIndex symbolIndex = new SymbolIndex(codeBlocks);
+        runner.measure("MethodBlock.walkMethod (warm)", () -> symbolIndex, HotPathBenchmark::walkAll);
+
+        runner.measure("CodeWalker.findDeadlocks", () -> {
+            CodeWalker walker = new CodeWalker(codeBlocks);
+            walker.walkAllThreadStarts();
+            return walker;
+        }, walker -> walker.findDeadlocks().size());
+
+        measureLockFinders(runner, codeBlocks);
+
+        if ( runner.getBlackhole() == 42)
+        {
+            System.out.println();
+        }
+    }
+
+    private static Object walkAll(SymbolIndex symbolIndex)
+    {
+        int lockEvents = 0;
+        for ( MethodBlock threadStart : new CodeWalker(symbolIndex.getCodeBlocks()).getThreadStarts())
+        {
+            List<LockInfo> lockInfo = new ArrayList<>();
+            threadStart.walkMethod(symbolIndex, lockInfo);
+            lockEvents += lockInfo.size();
+        }
+        return lockEvents;
+    }
+
+    /**
+     * Time each kind of lock finder over the statements of every method
+     */
+    private static void measureLockFinders(BenchmarkRunner runner, List<CodeBlock> codeBlocks) throws Exception
+    {
+        List<MethodBlock> methods = new ArrayList<>();
+        for ( CodeBlock codeBlock : codeBlocks)
+        {
+            findMethods(codeBlock, methods);
+        }
+
+        List<List<CharSequence>> statements = new ArrayList<>();
+        for ( MethodBlock method : methods)
+        {
+            statements.add(splitIntoStatements(method.getStatementIndex()));
+        }
+
+        for ( LockFinder finder : LockFinderFactory.getAllLockFinders())
+        {
+            // Build the states up front so only the statement checks are timed
+            runner.measure(finder.getClass().getSimpleName() + ".checkStatement", () -> buildStates(methods), states -> {
+                List<LockInfo> lockInfo = new ArrayList<>();
+                for ( int i=0; i<states.size(); i++)
+                {
+                    for ( CharSequence statement : statements.get(i))
+                    {
+                        finder.checkStatement(statement, states.get(i), lockInfo);
+                    }
+                }
+                return lockInfo.size();
+            });
+        }
+
+        measurePrefilter(runner, methods, statements);
+    }
+
+    /**
+     * Time all the lock finders together over every statement, with and without the keyword prefilter
+     * (which is what the walker does)
+     */
+    private static void measurePrefilter(BenchmarkRunner runner, List<MethodBlock> methods, List<List<CharSequence>> statements) throws Exception
+    {
+        List<LockFinder> finders = LockFinderFactory.getAllLockFinders();
+
+        runner.measure("all LockFinders (no prefilter)", () -> buildStates(methods), states -> {
+            List<LockInfo> lockInfo = new ArrayList<>();
+            for ( int i=0; i<states.size(); i++)
+            {
+                for ( CharSequence statement : statements.get(i))
+                {
+                    for ( LockFinder finder : finders)
+                    {
+                        finder.checkStatement(statement, states.get(i), lockInfo);
+                    }
+                }
+            }
+            return lockInfo.size();
+        });
+
+        runner.measure("all LockFinders (keyword prefilter)", () -> buildStates(methods), states -> {
+            List<LockInfo> lockInfo = new ArrayList<>();
+            for ( int i=0; i<states.size(); i++)
+            {
+                for ( CharSequence statement : statements.get(i))
+                {
+                    int keywords = LockKeywordScanner.scan(statement);
+                    if ( keywords == 0)
+                    {
+                        continue;
+                    }
+                    for ( LockFinder finder : finders)
+                    {
+                        if ( finder.mightMatch(keywords))
+                        {
+                            finder.checkStatement(statement, states.get(i), lockInfo);
+                        }
+                    }
+                }
+            }
+            return lockInfo.size();
+        });
+    }
+
+    private static List<LockFinderState> buildStates(List<MethodBlock> methods)
+    {
+        List<LockFinderState> states = new ArrayList<>();
+        for ( MethodBlock method : methods)
+        {
+            states.add(new LockFinderState(method));
+        }
+        return states;
+    }
+
+    private static void findMethods(CodeBlock codeBlock, List<MethodBlock> methods)
+    {
+        if ( codeBlock instanceof MethodBlock)
+        {
+            methods.add((MethodBlock) codeBlock);
+        }
+        for ( CodeBlock subCodeBlock : codeBlock.getSubCodeBlocks())
+        {
+            findMethods(subCodeBlock, methods);
+        }
+    }
+
+    /**
+     * The statements the walker goes through, as slices of the method's code
+     */
+    private static List<CharSequence> splitIntoStatements(StatementIndex statementIndex)
+    {
+        List<CharSequence> statements = new ArrayList<>(statementIndex.size());
+        for ( int i=0; i<statementIndex.size(); i++)
+        {
+            statements.add(statementIndex.getStatement(i));
+        }
+        return statements;
+    }
+}
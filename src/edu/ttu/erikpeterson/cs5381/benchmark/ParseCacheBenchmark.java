@@ -0,0 +1,67 @@
+package edu.ttu.erikpeterson.cs5381.benchmark;
+
+import edu.ttu.erikpeterson.cs5381.parser.CodeWalker;
+import edu.ttu.erikpeterson.cs5381.parser.ParseCache;
+import edu.ttu.erikpeterson.cs5381.parser.block.CodeBlock;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.util.List;
+
+/**
+ * Times a full analysis with an empty parse cache, then again after a one-line change to one file.
+ *
+ * Usage: ParseCacheBenchmark [file count] [methods per class] [nesting depth] [lock density %] [call fan-out]
+ */
+public class ParseCacheBenchmark {
+
+    public static void main(String[] args) throws Exception
+    {
+        int fileCount = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+        int methodsPerClass = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        int nestingDepth = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+        int lockDensity = args.length > 3 ? Integer.parseInt(args[3]) : 20;
+        int callFanOut = args.length > 4 ? Integer.parseInt(args[4]) : 1;
+
+        File directory = new SyntheticCorpus(fileCount, methodsPerClass, nestingDepth, lockDensity, callFanOut).write();
+        File cacheFile = File.createTempFile("ParseCacheBenchmark", ".bin");
+        cacheFile.delete();
+        try
+        {
+            analyze("cold (empty cache)", directory, cacheFile);
+            analyze("warm (nothing changed)", directory, cacheFile);
+
+            File[] files = directory.listFiles();
+            if ( files != null && files.length > 0)
+            {
+                try ( FileWriter writer = new FileWriter(files[0], true))
+                {
+                    writer.write("// changed\n");
+                }
+            }
+            analyze("warm (one line changed)", directory, cacheFile);
+            System.out.println(String.format("Cache size: %.1f KB", cacheFile.length() / 1024.0));
+        }
+        finally
+        {
+            cacheFile.delete();
+            SyntheticCorpus.delete(directory);
+        }
+    }
+
+    private static void analyze(String name, File directory, File cacheFile) throws Exception
+    {
+        long start = System.nanoTime();
+        ParseCache parseCache = new ParseCache(cacheFile, System.err);
+        List<CodeBlock> codeBlocks = parseCache.parsePath(directory);
+        CodeWalker walker = new CodeWalker(codeBlocks);
+        walker.walkAllThreadStarts();
+        int deadlocks = walker.findDeadlocks().size();
+        parseCache.save();
+        long elapsed = System.nanoTime() - start;
+
+        System.out.println(String.format("%-26s %9.1f ms  (%d parsed, %d from cache, %d deadlocks)",
+                                         name, elapsed / 1_000_000.0, parseCache.getFilesParsed(),
+                                         parseCache.getFilesReused(), deadlocks));
+    }
+}
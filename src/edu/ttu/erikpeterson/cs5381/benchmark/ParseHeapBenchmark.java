@@ -0,0 +1,60 @@
+package edu.ttu.erikpeterson.cs5381.benchmark;
+
+import edu.ttu.erikpeterson.cs5381.parser.BlockParsingException;
+import edu.ttu.erikpeterson.cs5381.parser.CodeBlockParser;
+import edu.ttu.erikpeterson.cs5381.parser.block.CodeBlock;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Measures how much heap the parsed code blocks for a generated corpus hold on to.
+ *
+ * Usage: ParseHeapBenchmark [file count] [methods per class] [nesting depth]
+ */
+public class ParseHeapBenchmark {
+
+    public static void main(String[] args) throws IOException, BlockParsingException
+    {
+        int fileCount = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        int methodsPerClass = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        int nestingDepth = args.length > 2 ? Integer.parseInt(args[2]) : 6;
+
+        File directory = new SyntheticCorpus(fileCount, methodsPerClass, nestingDepth).write();
+        try
+        {
+            long sourceBytes = 0;
+            File[] files = directory.listFiles();
+            if ( files != null)
+            {
+                for ( File file : files)
+                {
+                    sourceBytes += file.length();
+                }
+            }
+
+            long before = usedHeap();
+            List<CodeBlock> codeBlocks = CodeBlockParser.parsePath(directory);
+            long after = usedHeap();
+
+            System.out.println(String.format("Parsed %d files (%.1f MB of source, nesting depth %d) into %d classes",
+                                             fileCount, sourceBytes / 1048576.0, nestingDepth, codeBlocks.size()));
+            System.out.println(String.format("Heap held by the code blocks: %.1f MB", (after - before) / 1048576.0));
+        }
+        finally
+        {
+            SyntheticCorpus.delete(directory);
+        }
+    }
+
+    private static long usedHeap()
+    {
+        Runtime runtime = Runtime.getRuntime();
+        for ( int i=0; i<3; i++)
+        {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
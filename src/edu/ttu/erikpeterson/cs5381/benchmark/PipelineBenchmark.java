@@ -0,0 +1,68 @@
+package edu.ttu.erikpeterson.cs5381.benchmark;
+
+import edu.ttu.erikpeterson.cs5381.parser.CodeBlockParser;
+import edu.ttu.erikpeterson.cs5381.parser.CodeWalker;
+import edu.ttu.erikpeterson.cs5381.parser.ScanPipeline;
+import edu.ttu.erikpeterson.cs5381.parser.block.CodeBlock;
+
+import java.io.File;
+import java.util.List;
+
+/**
+ * Times a full analysis done in order (parsePath, then walk) against one done through the ScanPipeline.
+ * Each run uses freshly parsed blocks, so no lock summaries carry over between runs.
+ *
+ * Usage: PipelineBenchmark [file count] [threads] [readers]
+ */
+public class PipelineBenchmark {
+
+    public static void main(String[] args) throws Exception
+    {
+        int fileCount = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+        int numThreads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        int numReaders = args.length > 2 ? Integer.parseInt(args[2]) : 2;
+
+        File directory = new SyntheticCorpus(fileCount, 10, 3, 20, 1).write();
+        try
+        {
+            for ( int run=0; run<3; run++)
+            {
+                long start = System.nanoTime();
+                List<CodeBlock> codeBlocks = CodeBlockParser.parsePath(directory, numThreads);
+                int deadlocks = analyze(codeBlocks, numThreads);
+                report("parsePath, then walk", start, deadlocks);
+
+                start = System.nanoTime();
+                ScanPipeline pipeline = new ScanPipeline(numReaders, numThreads, numThreads * 4);
+                pipeline.start();
+                File[] files = directory.listFiles();
+                if ( files != null)
+                {
+                    for ( File file : files)
+                    {
+                        pipeline.addFile(file);
+                    }
+                }
+                deadlocks = analyze(pipeline.finish(), numThreads);
+                report("pipeline, then walk", start, deadlocks);
+            }
+        }
+        finally
+        {
+            SyntheticCorpus.delete(directory);
+        }
+    }
+
+    private static int analyze(List<CodeBlock> codeBlocks, int numThreads)
+    {
+        CodeWalker walker = new CodeWalker(codeBlocks);
+        walker.walkAllThreadStarts(numThreads);
+        return walker.findDeadlocks().size();
+    }
+
+    private static void report(String name, long start, int deadlocks)
+    {
+        long elapsed = System.nanoTime() - start;
+        System.out.println(String.format("%-22s %9.1f ms  (%d deadlocks)", name, elapsed / 1_000_000.0, deadlocks));
+    }
+}
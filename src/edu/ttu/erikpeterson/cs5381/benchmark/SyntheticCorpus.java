@@ -0,0 +1,208 @@
+package edu.ttu.erikpeterson.cs5381.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/**
+ * Generates Java source for the benchmarks. Each file holds one class with a couple of fields and
+ * a number of methods whose bodies are loops nested to a given depth.
+ *
+ * Optionally some of the methods take locks (alternating between synchronized blocks, ReentrantLocks and
+ * ReadWriteLocks, with the synchronized ones taken in opposite orders so there are deadlocks to find), each
+ * method calls the next few methods in its class, and each class has a thread that starts at method0.
+ */
+public class SyntheticCorpus {
+
+    private final int fileCount;
+    private final int methodsPerClass;
+    private final int nestingDepth;
+    private final int lockDensity;
+    private final int callFanOut;
+
+    /**
+     * Constructor for a corpus with no locks or calls
+     *
+     * @param fileCount Number of files (one class each)
+     * @param methodsPerClass Number of methods in each class
+     * @param nestingDepth How deeply the loops in each method are nested
+     */
+    public SyntheticCorpus(int fileCount, int methodsPerClass, int nestingDepth)
+    {
+        this(fileCount, methodsPerClass, nestingDepth, 0, 0);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param fileCount Number of files (one class each)
+     * @param methodsPerClass Number of methods in each class
+     * @param nestingDepth How deeply the loops in each method are nested
+     * @param lockDensity Percentage (0-100) of methods that take locks
+     * @param callFanOut Number of other methods each method calls. Every path through the calls gets
+     *                   walked, so keep this small when there are a lot of methods per class.
+     */
+    public SyntheticCorpus(int fileCount, int methodsPerClass, int nestingDepth, int lockDensity, int callFanOut)
+    {
+        this.fileCount = fileCount;
+        this.methodsPerClass = methodsPerClass;
+        this.nestingDepth = nestingDepth;
+        this.lockDensity = lockDensity;
+        this.callFanOut = callFanOut;
+    }
+
+    /**
+     * Write the corpus to a new temporary directory
+     *
+     * @return The directory holding the generated files
+     */
+    public File write() throws IOException
+    {
+        File directory = Files.createTempDirectory("SyntheticCorpus").toFile();
+        for ( int classNumber=0; classNumber<fileCount; classNumber++)
+        {
+            File file = new File(directory, className(classNumber) + ".java");
+            try ( PrintWriter writer = new PrintWriter(file, StandardCharsets.UTF_8.name()))
+            {
+                writer.print(generateClass(classNumber));
+            }
+        }
+        return directory;
+    }
+
+    /**
+     * Remove a directory written by {@link #write()}
+     *
+     * @param directory Directory to remove
+     */
+    public static void delete(File directory)
+    {
+        File[] files = directory.listFiles();
+        if ( files != null)
+        {
+            for ( File file : files)
+            {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    /**
+     * @param classNumber Which class to generate
+     * @return Source for that class
+     */
+    public String generateClass(int classNumber)
+    {
+        StringBuilder builder = new StringBuilder();
+        builder.append("package generated;\n\n");
+        if ( lockDensity > 0)
+        {
+            builder.append("import java.util.concurrent.locks.ReadWriteLock;\n");
+            builder.append("import java.util.concurrent.locks.ReentrantLock;\n");
+            builder.append("import java.util.concurrent.locks.ReentrantReadWriteLock;\n\n");
+        }
+        builder.append("public class ").append(className(classNumber)).append(" {\n\n");
+        builder.append("    private final String name = \"").append(className(classNumber)).append("\";\n");
+        builder.append("    private int counter;\n");
+        if ( lockDensity > 0)
+        {
+            builder.append("    private final Object lockA = new Object();\n");
+            builder.append("    private final Object lockB = new Object();\n");
+            builder.append("    private final ReentrantLock reentrantLock = new ReentrantLock();\n");
+            builder.append("    private final ReadWriteLock readWriteLock = new ReentrantReadWriteLock();\n");
+        }
+        if ( lockDensity > 0 || callFanOut > 0)
+        {
+            builder.append("\n    private Thread worker = new Thread(() -> {\n");
+            builder.append("        method0();\n");
+            builder.append("    });\n");
+        }
+
+        int lockingMethods = 0;
+        for ( int methodNumber=0; methodNumber<methodsPerClass; methodNumber++)
+        {
+            builder.append("\n    /**\n     * Generated method ").append(methodNumber).append("\n     */\n");
+            builder.append("    public void method").append(methodNumber).append("()\n    {\n");
+            builder.append("        int total = 0;\n");
+            appendLoops(builder, 0);
+            // Spread the locking methods evenly through the class
+            if ( (methodNumber + 1) * lockDensity / 100 > lockingMethods)
+            {
+                appendLocks(builder, lockingMethods);
+                lockingMethods++;
+            }
+            for ( int call=methodNumber + 1; call<=methodNumber + callFanOut && call<methodsPerClass; call++)
+            {
+                builder.append("        method").append(call).append("();\n");
+            }
+            builder.append("        System.out.println(\"Total \" + total);\n");
+            builder.append("    }\n");
+        }
+
+        builder.append("}\n");
+        return builder.toString();
+    }
+
+    private void appendLoops(StringBuilder builder, int depth)
+    {
+        if ( depth >= nestingDepth)
+        {
+            return;
+        }
+
+        String indent = indent(depth + 2);
+        String loopVariable = "i" + depth;
+        builder.append(indent).append("for (int ").append(loopVariable).append("=0; ")
+               .append(loopVariable).append("<10; ").append(loopVariable).append("++)\n");
+        builder.append(indent).append("{\n");
+        builder.append(indent).append("    total += ").append(loopVariable).append(";\n");
+        builder.append(indent).append("    counter++;\n");
+        appendLoops(builder, depth + 1);
+        builder.append(indent).append("}\n");
+    }
+
+    private static void appendLocks(StringBuilder builder, int lockNumber)
+    {
+        switch ( lockNumber % 4)
+        {
+            case 0:
+            case 2:
+                // Opposite orders on alternate methods
+                String first = lockNumber % 4 == 0 ? "lockA" : "lockB";
+                String second = lockNumber % 4 == 0 ? "lockB" : "lockA";
+                builder.append("        synchronized (").append(first).append(")\n        {\n");
+                builder.append("            synchronized (").append(second).append(")\n            {\n");
+                builder.append("                counter++;\n");
+                builder.append("            }\n        }\n");
+                break;
+            case 1:
+                builder.append("        reentrantLock.lock();\n");
+                builder.append("        counter++;\n");
+                builder.append("        reentrantLock.unlock();\n");
+                break;
+            default:
+                builder.append("        readWriteLock.readLock().lock();\n");
+                builder.append("        total += counter;\n");
+                builder.append("        readWriteLock.readLock().unlock();\n");
+                break;
+        }
+    }
+
+    private static String indent(int level)
+    {
+        StringBuilder builder = new StringBuilder();
+        for ( int i=0; i<level; i++)
+        {
+            builder.append("    ");
+        }
+        return builder.toString();
+    }
+
+    private static String className(int classNumber)
+    {
+        return "Generated" + classNumber;
+    }
+}
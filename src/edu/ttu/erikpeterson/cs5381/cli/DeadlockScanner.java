@@ -0,0 +1,417 @@
+package edu.ttu.erikpeterson.cs5381.cli;
+
+import edu.ttu.erikpeterson.cs5381.instrumentation.Instrumentation;
+import edu.ttu.erikpeterson.cs5381.parser.BlockParsingException;
+import edu.ttu.erikpeterson.cs5381.parser.CodeWalker;
+import edu.ttu.erikpeterson.cs5381.parser.Deadlock;
+import edu.ttu.erikpeterson.cs5381.parser.ScanPipeline;
+import edu.ttu.erikpeterson.cs5381.parser.block.CodeBlock;
+import edu.ttu.erikpeterson.cs5381.parser.block.LockInfo;
+import edu.ttu.erikpeterson.cs5381.parser.block.MethodBlock;
+import edu.ttu.erikpeterson.cs5381.parser.block.WalkContext;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Command line scanner, for running the deadlock check over one or more source trees (e.g. in CI).
+ *
+ * Usage: DeadlockScanner [options] [root...]
+ *
+ * Files go down a {@link ScanPipeline} as soon as they're found, so looking through the roots, reading and
+ * parsing all overlap. Walking has to wait for everything to be parsed, since a call can go to any
+ * class. Deadlocks are printed as they're found.
+ *
+ * Exit code is 0 if no deadlocks were found, 1 if some were, and 2 if the scan couldn't be run (or failed part
+ * way through). Files that can't be parsed are reported and skipped; with --fail-on-skipped, a scan that
+ * skipped any and found no deadlocks exits with 3.
+ */
+public class DeadlockScanner {
+
+    /**
+     * Exit code when no deadlocks were found
+     */
+    public static final int NO_DEADLOCKS = 0;
+
+    /**
+     * Exit code when at least one deadlock was found
+     */
+    public static final int DEADLOCKS_FOUND = 1;
+
+    /**
+     * Exit code when the arguments were bad, a root couldn't be read or the scan failed part way through
+     */
+    public static final int SCAN_FAILED = 2;
+
+    /**
+     * Exit code when no deadlocks were found but some files were skipped (only with --fail-on-skipped)
+     */
+    public static final int FILES_SKIPPED = 3;
+
+    private static final String USAGE =
+        "Usage: DeadlockScanner [options] [root...]\n" +
+        "  Scans every root (default: the current directory) for potential deadlocks.\n" +
+        "Options:\n" +
+        "  --include <glob>   Only scan files matching this glob, relative to their root (default **.java).\n" +
+        "                     Can be given more than once.\n" +
+        "  --exclude <glob>   Skip files matching this glob, relative to their root. Can be given more than once.\n" +
+        "  --threads <n>      Threads to parse and walk with (default: number of processors)\n" +
+        "  --readers <n>      Threads reading files, ahead of the parsers (default 2)\n" +
+        "  --format <f>       text (default) or json (one JSON object per line, per deadlock)\n" +
+        "  --max-depth <n>    How many methods deep to follow calls (default " + WalkContext.DEFAULT_MAX_DEPTH + ")\n" +
+        "  --max-methods <n>  How many methods each thread's walk can enter in all (default " + WalkContext.DEFAULT_MAX_METHODS + ")\n" +
+        "  --lazy             Only parse the inside of a method when it's walked (or might start a thread)\n" +
+        "  --lock-sets        Keep only the sets of locks each thread holds at once, rather than every lock event\n" +
+        "  --fail-on-skipped  Exit with " + FILES_SKIPPED + " rather than " + NO_DEADLOCKS + " if files couldn't be parsed\n" +
+        "  --stats <file>     Write timings and counts for each phase to this file as JSON (- for stderr)\n" +
+        "  --help             Show this message";
+
+    /**
+     * What was asked for on the command line
+     */
+    private static final class Options {
+        private final List<Path> roots = new ArrayList<>();
+        private final List<PathMatcher> includes = new ArrayList<>();
+        private final List<PathMatcher> excludes = new ArrayList<>();
+        private int numThreads = Runtime.getRuntime().availableProcessors();
+        private int numReaders = 2;
+        private boolean json;
+        private int maxDepth = WalkContext.DEFAULT_MAX_DEPTH;
+        private int maxMethods = WalkContext.DEFAULT_MAX_METHODS;
+        private boolean lockSets;
+        private boolean lazyBodies;
+        private boolean failOnSkipped;
+        private String statsFile;
+        private boolean help;
+    }
+
+    public static void main(String[] args) throws IOException
+    {
+        Instrumentation.enableFromSystemProperties();
+        System.exit(run(args, System.out, System.err));
+    }
+
+    /**
+     * Run a scan
+     *
+     * @param args Command line arguments
+     * @param out Where the deadlocks go
+     * @param err Where problems (and usage) go
+     * @return Exit code (see the constants in this class)
+     */
+    public static int run(String[] args, PrintStream out, PrintStream err)
+    {
+        Options options;
+        try
+        {
+            options = parseArguments(args);
+        }
+        catch ( IllegalArgumentException e)
+        {
+            err.println(e.getMessage());
+            err.println(USAGE);
+            return SCAN_FAILED;
+        }
+
+        if ( options.help)
+        {
+            out.println(USAGE);
+            return NO_DEADLOCKS;
+        }
+
+        if ( options.statsFile != null)
+        {
+            Instrumentation.enable();
+        }
+
+        try
+        {
+            ScanPipeline pipeline = new ScanPipeline(options.numReaders, options.numThreads, options.numThreads * 4);
+            pipeline.setErrorOutput(err);
+            pipeline.setLazyBodies(options.lazyBodies);
+            List<CodeBlock> codeBlocks = parseRoots(options, pipeline);
+
+            CodeWalker walker = new CodeWalker(codeBlocks);
+            walker.setMaxCallDepth(options.maxDepth);
+            walker.setMaxMethodsPerThread(options.maxMethods);
+            walker.setLockSetAbstraction(options.lockSets);
+            walker.walkAllThreadStarts(options.numThreads);
+
+            int[] deadlockCount = new int[1];
+            walker.findDeadlocks(deadlock -> {
+                deadlockCount[0]++;
+                out.println(options.json ? toJson(deadlock) : deadlock.getMessage());
+            });
+            out.flush();
+
+            if ( walker.getPathsTruncated() > 0)
+            {
+                err.println("# " + walker.getPathsTruncated() + " calls were deeper than --max-depth " +
+                            options.maxDepth + " or past --max-methods " + options.maxMethods + " and weren't followed");
+            }
+            if ( pipeline.getFilesSkipped() > 0)
+            {
+                err.println("# " + pipeline.getFilesSkipped() + " files couldn't be parsed and were skipped");
+            }
+
+            if ( deadlockCount[0] > 0)
+            {
+                return DEADLOCKS_FOUND;
+            }
+            return options.failOnSkipped && pipeline.getFilesSkipped() > 0 ? FILES_SKIPPED : NO_DEADLOCKS;
+        }
+        catch ( IOException e)
+        {
+            err.println("Unable to scan: " + e.getMessage());
+            return SCAN_FAILED;
+        }
+        catch ( RuntimeException e)
+        {
+            // Anything else escaping would exit with 1, which looks like deadlocks were found
+            err.println("Scan failed: " + e);
+            return SCAN_FAILED;
+        }
+        finally
+        {
+            if ( options.statsFile != null)
+            {
+                try
+                {
+                    Instrumentation.writeSummary(options.statsFile);
+                }
+                catch ( IOException e)
+                {
+                    err.println("Unable to write stats to " + options.statsFile + ": " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private static Options parseArguments(String[] args)
+    {
+        Options options = new Options();
+        List<String> includes = new ArrayList<>();
+
+        for ( int i=0; i<args.length; i++)
+        {
+            String arg = args[i];
+            switch ( arg)
+            {
+                case "--include":
+                    includes.add(nextArgument(args, ++i, arg));
+                    break;
+                case "--exclude":
+                    options.excludes.add(globMatcher(nextArgument(args, ++i, arg)));
+                    break;
+                case "--threads":
+                    options.numThreads = positiveNumber(nextArgument(args, ++i, arg), arg);
+                    break;
+                case "--readers":
+                    options.numReaders = positiveNumber(nextArgument(args, ++i, arg), arg);
+                    break;
+                case "--format":
+                    String format = nextArgument(args, ++i, arg);
+                    if ( !format.equals("text") && !format.equals("json"))
+                    {
+                        throw new IllegalArgumentException("Unknown format " + format);
+                    }
+                    options.json = format.equals("json");
+                    break;
+                case "--max-depth":
+                    options.maxDepth = positiveNumber(nextArgument(args, ++i, arg), arg);
+                    break;
+                case "--max-methods":
+                    options.maxMethods = positiveNumber(nextArgument(args, ++i, arg), arg);
+                    break;
+                case "--lazy":
+                    options.lazyBodies = true;
+                    break;
+                case "--lock-sets":
+                    options.lockSets = true;
+                    break;
+                case "--fail-on-skipped":
+                    options.failOnSkipped = true;
+                    break;
+                case "--stats":
+                    options.statsFile = nextArgument(args, ++i, arg);
+                    break;
+                case "--help":
+                case "-h":
+                    options.help = true;
+                    break;
+                default:
+                    if ( arg.startsWith("--"))
+                    {
+                        throw new IllegalArgumentException("Unknown option " + arg);
+                    }
+                    options.roots.add(Paths.get(arg));
+                    break;
+            }
+        }
+
+        if ( options.roots.isEmpty())
+        {
+            options.roots.add(Paths.get("."));
+        }
+        if ( includes.isEmpty())
+        {
+            includes.add("**.java");
+        }
+        for ( String include : includes)
+        {
+            options.includes.add(globMatcher(include));
+        }
+        return options;
+    }
+
+    private static String nextArgument(String[] args, int index, String option)
+    {
+        if ( index >= args.length)
+        {
+            throw new IllegalArgumentException(option + " needs a value");
+        }
+        return args[index];
+    }
+
+    private static int positiveNumber(String value, String option)
+    {
+        try
+        {
+            int number = Integer.parseInt(value);
+            if ( number >= 1)
+            {
+                return number;
+            }
+        }
+        catch ( NumberFormatException e)
+        {
+            // Fall through to the error below
+        }
+        throw new IllegalArgumentException(option + " needs a number of at least 1, not " + value);
+    }
+
+    private static PathMatcher globMatcher(String glob)
+    {
+        return FileSystems.getDefault().getPathMatcher("glob:" + glob);
+    }
+
+    /**
+     * Find and parse every file under the roots. Each file goes down the read/parse pipeline as soon as it's
+     * found; the blocks come back in the order the files were found, so the output doesn't depend on timing.
+     * A file that can't be parsed is reported and skipped.
+     */
+    private static List<CodeBlock> parseRoots(Options options, ScanPipeline pipeline) throws IOException
+    {
+        pipeline.start();
+
+        IOException discoveryFailure = null;
+        try
+        {
+            for ( Path root : options.roots)
+            {
+                if ( !Files.exists(root))
+                {
+                    throw new FileNotFoundException("Root " + root.toAbsolutePath() + " can't be found!");
+                }
+
+                Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+                    @Override
+                    public FileVisitResult visitFile(Path file, BasicFileAttributes attributes)
+                    {
+                        if ( attributes.isRegularFile() && isIncluded(options, root, file))
+                        {
+                            pipeline.addFile(file.toFile());
+                        }
+                        return FileVisitResult.CONTINUE;
+                    }
+                });
+            }
+        }
+        catch ( IOException e)
+        {
+            discoveryFailure = e;
+        }
+
+        // Always finish, so the pipeline's threads go away
+        List<CodeBlock> codeBlocks;
+        try
+        {
+            codeBlocks = pipeline.finish();
+        }
+        catch ( BlockParsingException e)
+        {
+            throw new IOException(e.getMessage());
+        }
+
+        if ( discoveryFailure != null)
+        {
+            throw discoveryFailure;
+        }
+        return codeBlocks;
+    }
+
+    private static boolean isIncluded(Options options, Path root, Path file)
+    {
+        // Globs are matched against the path under the root, or just the name when the root is the file itself
+        Path relative = file.equals(root) ? file.getFileName() : root.relativize(file);
+        for ( PathMatcher exclude : options.excludes)
+        {
+            if ( exclude.matches(relative))
+            {
+                return false;
+            }
+        }
+        for ( PathMatcher include : options.includes)
+        {
+            if ( include.matches(relative))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param deadlock A deadlock
+     * @return It as one line of JSON
+     */
+    static String toJson(Deadlock deadlock)
+    {
+        StringBuilder json = new StringBuilder("{\"locks\":[");
+        for ( int i=0; i<deadlock.getLocks().size(); i++)
+        {
+            LockInfo lock = deadlock.getLocks().get(i);
+            if ( i > 0)
+            {
+                json.append(',');
+            }
+            json.append("{\"name\":").append(Instrumentation.quote(lock.getName()))
+                .append(",\"type\":").append(Instrumentation.quote(String.valueOf(lock.getType())))
+                .append(",\"foundIn\":").append(Instrumentation.quote(lock.getWhereFound()))
+                .append('}');
+        }
+        json.append("],\"threadStarts\":[");
+        for ( int i=0; i<deadlock.getThreadStarts().size(); i++)
+        {
+            MethodBlock threadStart = deadlock.getThreadStarts().get(i);
+            if ( i > 0)
+            {
+                json.append(',');
+            }
+            json.append(Instrumentation.quote(threadStart.getClassAndName()));
+        }
+        json.append("],\"message\":").append(Instrumentation.quote(deadlock.getMessage())).append('}');
+        return json.toString();
+    }
+}
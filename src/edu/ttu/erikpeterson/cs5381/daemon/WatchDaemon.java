@@ -0,0 +1,300 @@
+package edu.ttu.erikpeterson.cs5381.daemon;
+
+import edu.ttu.erikpeterson.cs5381.instrumentation.Instrumentation;
+import edu.ttu.erikpeterson.cs5381.parser.BlockParsingException;
+import edu.ttu.erikpeterson.cs5381.parser.CodeBlockParser;
+import edu.ttu.erikpeterson.cs5381.parser.CodeWalker;
+import edu.ttu.erikpeterson.cs5381.parser.block.CodeBlock;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps a source tree's analysis in memory and redoes it whenever a file changes. Only the changed
+ * files are parsed again; everything else keeps its blocks (and their lock summaries, so walking
+ * them is just a replay).
+ *
+ * Each analysis is written to the output as a header line, one line per deadlock and a blank line:
+ *
+ * <pre>
+ * # analysis 3: 120 files, 14 thread starts, 1 deadlocks (35 ms)
+ * Potential deadlock between variables ...
+ *
+ * </pre>
+ *
+ * Usage: WatchDaemon [source root] [number of threads]
+ */
+public class WatchDaemon {
+
+    // Editors tend to write a file in a few steps; wait this long for things to settle before re-analyzing
+    private static final long SETTLE_MILLIS = 100;
+
+    private final Path root;
+    private final PrintStream output;
+    private final int numThreads;
+
+    // Sorted by path so the classes are always in the same order
+    private final Map<Path, List<CodeBlock>> fileBlocks = new TreeMap<>();
+    private List<String> deadlocks = Collections.emptyList();
+    private int threadStartCount;
+    private int analysisCount;
+
+    /**
+     * Constructor
+     *
+     * @param root Source root to watch
+     * @param output Where to write results
+     * @param numThreads Number of threads to walk with
+     */
+    public WatchDaemon(Path root, PrintStream output, int numThreads)
+    {
+        this.root = root.toAbsolutePath();
+        this.output = output;
+        this.numThreads = numThreads;
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException
+    {
+        Path root = Paths.get(args.length > 0 ? args[0] : ".");
+        int numThreads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+
+        Instrumentation.enableFromSystemProperties();
+        WatchDaemon daemon = new WatchDaemon(root, System.out, numThreads);
+        daemon.loadAll();
+        daemon.watch();
+    }
+
+    /**
+     * Parse everything under the root from scratch and analyze it
+     */
+    public void loadAll() throws IOException
+    {
+        fileBlocks.clear();
+        for ( Path file : findSourceFiles(root))
+        {
+            parse(file);
+        }
+        analyze();
+    }
+
+    /**
+     * Pick up changes to some files (or directories) and analyze again
+     *
+     * @param changedPaths Files or directories that were added, changed or removed
+     */
+    public void update(Collection<Path> changedPaths) throws IOException
+    {
+        for ( Path changedPath : changedPaths)
+        {
+            changedPath = changedPath.toAbsolutePath();
+
+            // Whatever was there before (a file, or everything under a directory) is gone...
+            Iterator<Path> knownFiles = fileBlocks.keySet().iterator();
+            while ( knownFiles.hasNext())
+            {
+                if ( knownFiles.next().startsWith(changedPath))
+                {
+                    knownFiles.remove();
+                }
+            }
+
+            // ...and replaced with whatever's there now
+            if ( Files.isDirectory(changedPath))
+            {
+                for ( Path file : findSourceFiles(changedPath))
+                {
+                    parse(file);
+                }
+            }
+            else if ( isSourceFile(changedPath) && Files.isRegularFile(changedPath))
+            {
+                parse(changedPath);
+            }
+        }
+        analyze();
+    }
+
+    /**
+     * Watch the root (and every directory under it) until interrupted, analyzing again after every change
+     */
+    public void watch() throws IOException, InterruptedException
+    {
+        try ( WatchService watchService = root.getFileSystem().newWatchService())
+        {
+            Map<WatchKey, Path> watchedDirectories = new HashMap<>();
+            registerAll(root, watchService, watchedDirectories);
+
+            while ( !Thread.currentThread().isInterrupted())
+            {
+                WatchKey key = watchService.take();
+                Set<Path> changedPaths = new LinkedHashSet<>();
+                boolean overflow = false;
+
+                // Gather up everything that happens until things settle down
+                while ( key != null)
+                {
+                    Path directory = watchedDirectories.get(key);
+                    for ( WatchEvent<?> event : key.pollEvents())
+                    {
+                        if ( event.kind() == StandardWatchEventKinds.OVERFLOW)
+                        {
+                            overflow = true;
+                        }
+                        else if ( directory != null)
+                        {
+                            Path changedPath = directory.resolve((Path) event.context());
+                            changedPaths.add(changedPath);
+                            if ( event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(changedPath))
+                            {
+                                registerAll(changedPath, watchService, watchedDirectories);
+                            }
+                        }
+                    }
+                    if ( !key.reset())
+                    {
+                        watchedDirectories.remove(key);
+                    }
+                    key = watchService.poll(SETTLE_MILLIS, TimeUnit.MILLISECONDS);
+                }
+
+                if ( overflow)
+                {
+                    // Lost track of what changed
+                    loadAll();
+                }
+                else
+                {
+                    update(changedPaths);
+                }
+            }
+        }
+        catch ( ClosedWatchServiceException e)
+        {
+            // Shut down
+        }
+    }
+
+    /**
+     * @return The deadlocks from the latest analysis
+     */
+    public List<String> getDeadlocks()
+    {
+        return deadlocks;
+    }
+
+    /**
+     * @return Number of thread starts in the latest analysis
+     */
+    public int getThreadStartCount()
+    {
+        return threadStartCount;
+    }
+
+    private void parse(Path file)
+    {
+        try
+        {
+            fileBlocks.put(file, CodeBlockParser.parse(file.toFile()));
+        }
+        catch ( FileNotFoundException e)
+        {
+            // Removed before we got to it
+            fileBlocks.remove(file);
+        }
+        catch ( BlockParsingException | RuntimeException e)
+        {
+            // Probably saved part way through an edit. Leave it out until it parses again
+            output.println("# unable to parse " + file + ": " + e.getMessage());
+            fileBlocks.remove(file);
+        }
+    }
+
+    private void analyze()
+    {
+        long start = System.nanoTime();
+
+        List<CodeBlock> codeBlocks = new ArrayList<>();
+        for ( List<CodeBlock> blocks : fileBlocks.values())
+        {
+            codeBlocks.addAll(blocks);
+        }
+
+        // Unchanged files keep their lock summaries, so this mostly replays them against the new set of classes
+        CodeWalker walker = new CodeWalker(codeBlocks);
+        walker.walkAllThreadStarts(numThreads);
+        threadStartCount = walker.getThreadStarts().size();
+        deadlocks = walker.findDeadlocks();
+        analysisCount++;
+
+        long elapsed = System.nanoTime() - start;
+        output.println("# analysis " + analysisCount + ": " + fileBlocks.size() + " files, " + threadStartCount +
+                       " thread starts, " + deadlocks.size() + " deadlocks (" + elapsed / 1_000_000 + " ms)");
+        for ( String deadlock : deadlocks)
+        {
+            output.println(deadlock);
+        }
+        output.println();
+        output.flush();
+    }
+
+    private static List<Path> findSourceFiles(Path directory) throws IOException
+    {
+        List<Path> files = new ArrayList<>();
+        Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attributes)
+            {
+                if ( isSourceFile(file) && attributes.isRegularFile())
+                {
+                    files.add(file.toAbsolutePath());
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return files;
+    }
+
+    private static boolean isSourceFile(Path file)
+    {
+        return file.getFileName() != null && file.getFileName().toString().endsWith(".java");
+    }
+
+    private static void registerAll(Path directory, WatchService watchService, Map<WatchKey, Path> watchedDirectories) throws IOException
+    {
+        Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path subDirectory, BasicFileAttributes attributes) throws IOException
+            {
+                WatchKey key = subDirectory.register(watchService,
+                                                     StandardWatchEventKinds.ENTRY_CREATE,
+                                                     StandardWatchEventKinds.ENTRY_MODIFY,
+                                                     StandardWatchEventKinds.ENTRY_DELETE);
+                watchedDirectories.put(key, subDirectory.toAbsolutePath());
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+}
@@ -0,0 +1,400 @@
+package edu.ttu.erikpeterson.cs5381.instrumentation;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Timings and counts for each part of the analysis, so we can see where a slow scan spends its time.
+ *
+ * It's off unless {@link #enable()} is called. When it's off, every hook is a check of one volatile
+ * boolean and nothing else (no clock reads, no counting). Everything is static since the parser and walker
+ * are static utilities too, and the counters can be bumped from any thread.
+ *
+ * Phases can nest (e.g. findVariables runs while building lock summaries), so the phase times don't add up
+ * to the total.
+ *
+ * From the command line, -D{@value #SUMMARY_PROPERTY}=file writes the JSON summary to that file (or to
+ * stderr for "-") when the program exits, and -D{@value #EVENTS_PROPERTY}=file writes each timed phase to
+ * that file as a line of JSON while the program runs.
+ */
+public final class Instrumentation {
+
+    /**
+     * The parts of the analysis that are timed
+     */
+    public enum Phase {
+        READ_FILES("readFiles"),
+        REMOVE_COMMENTS("removeAllComments"),
+        FIND_BLOCKS("findBlocks"),
+        FIND_VARIABLES("findVariables"),
+        BUILD_LOCK_SUMMARIES("buildLockSummaries"),
+        WALK_METHODS("walkMethods"),
+        FIND_DEADLOCKS("findDeadlocks"),
+        CHECK_LOCK_COMBINATIONS("checkLockCombinations");
+
+        private final String jsonName;
+
+        Phase(String jsonName)
+        {
+            this.jsonName = jsonName;
+        }
+    }
+
+    /**
+     * Things that are counted
+     */
+    public enum Counter {
+        FILES_READ("filesRead"),
+        BYTES_READ("bytesRead"),
+        FILES_PARSED("filesParsed"),
+        CHARACTERS_PARSED("charactersParsed"),
+        BODIES_DEFERRED("bodiesDeferred"),
+        BODIES_UNPARSEABLE("bodiesUnparseable"),
+        STATEMENTS_SCANNED("statementsScanned"),
+        CALLS_RESOLVED("callsResolved"),
+        CALLS_UNRESOLVED("callsUnresolved"),
+        LOCK_EVENTS("lockEvents"),
+        COMBINATIONS_COMPARED("combinationsCompared");
+
+        private final String jsonName;
+
+        Counter(String jsonName)
+        {
+            this.jsonName = jsonName;
+        }
+    }
+
+    /**
+     * System property naming where the summary goes
+     */
+    public static final String SUMMARY_PROPERTY = "deadlock.instrumentation";
+
+    /**
+     * System property naming where the phase events go
+     */
+    public static final String EVENTS_PROPERTY = "deadlock.instrumentation.events";
+
+    private static volatile boolean enabled;
+    private static volatile PrintStream eventStream;
+
+    private static final LongAdder[] phaseNanos = newAdders(Phase.values().length);
+    private static final LongAdder[] phaseCalls = newAdders(Phase.values().length);
+    private static final LongAdder[] counters = newAdders(Counter.values().length);
+    private static final Map<String, LongAdder> lockFinderMatches = new ConcurrentHashMap<>();
+
+    private Instrumentation()
+    {
+    }
+
+    public static void enable() { enabled = true; }
+
+    public static void disable() { enabled = false; }
+
+    public static boolean isEnabled() { return enabled; }
+
+    /**
+     * Also write every timed phase, as it finishes, as one line of JSON. Implies {@link #enable()}.
+     *
+     * @param stream Where to write the events (null to stop)
+     */
+    public static void setEventStream(PrintStream stream)
+    {
+        eventStream = stream;
+        if ( stream != null)
+        {
+            enabled = true;
+        }
+    }
+
+    /**
+     * Turn on whatever the system properties ask for (see the class comment). Does nothing if they aren't set.
+     */
+    public static void enableFromSystemProperties() throws IOException
+    {
+        String eventsFile = System.getProperty(EVENTS_PROPERTY);
+        if ( eventsFile != null)
+        {
+            setEventStream(eventsFile.equals("-") ?
+                           System.err :
+                           new PrintStream(new FileOutputStream(eventsFile), true, "UTF-8"));
+        }
+
+        String summaryFile = System.getProperty(SUMMARY_PROPERTY);
+        if ( summaryFile != null)
+        {
+            enable();
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try
+                {
+                    writeSummary(summaryFile);
+                }
+                catch ( IOException e)
+                {
+                    System.err.println("Unable to write instrumentation summary to " + summaryFile + ": " + e.getMessage());
+                }
+            }));
+        }
+    }
+
+    /**
+     * Write everything recorded so far to a file, as one line of JSON
+     *
+     * @param summaryFile File to write (or "-" for stderr)
+     */
+    public static void writeSummary(String summaryFile) throws IOException
+    {
+        String summary = toJson();
+        if ( summaryFile.equals("-"))
+        {
+            System.err.println(summary);
+            return;
+        }
+
+        try ( Writer writer = new OutputStreamWriter(new FileOutputStream(summaryFile), StandardCharsets.UTF_8))
+        {
+            writer.write(summary);
+            writer.write(System.lineSeparator());
+        }
+    }
+
+    /**
+     * Throw away everything recorded so far
+     */
+    public static void reset()
+    {
+        for ( LongAdder adder : phaseNanos)
+        {
+            adder.reset();
+        }
+        for ( LongAdder adder : phaseCalls)
+        {
+            adder.reset();
+        }
+        for ( LongAdder adder : counters)
+        {
+            adder.reset();
+        }
+        lockFinderMatches.clear();
+    }
+
+    /**
+     * Start timing something
+     *
+     * @return What to hand to {@link #stop}, or 0 if we're not recording
+     */
+    public static long start()
+    {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Finish timing something
+     *
+     * @param phase Which phase it was
+     * @param start What {@link #start()} returned
+     */
+    public static void stop(Phase phase, long start)
+    {
+        if ( start == 0 || !enabled)
+        {
+            return;
+        }
+
+        long nanos = System.nanoTime() - start;
+        phaseNanos[phase.ordinal()].add(nanos);
+        phaseCalls[phase.ordinal()].increment();
+
+        PrintStream stream = eventStream;
+        if ( stream != null)
+        {
+            String event = "{\"event\":\"phase\",\"phase\":\"" + phase.jsonName + "\",\"nanos\":" + nanos +
+                           ",\"thread\":" + quote(Thread.currentThread().getName()) + "}";
+            // One println per event, so lines from different threads don't get mixed up
+            stream.println(event);
+        }
+    }
+
+    /**
+     * @param counter What to count
+     * @param amount How much to add
+     */
+    public static void count(Counter counter, long amount)
+    {
+        if ( enabled)
+        {
+            counters[counter.ordinal()].add(amount);
+        }
+    }
+
+    /**
+     * Count a statement a lock finder found a lock (or unlock) in
+     *
+     * @param lockFinder Name of the lock finder
+     */
+    public static void countLockFinderMatch(String lockFinder)
+    {
+        if ( enabled)
+        {
+            lockFinderMatches.computeIfAbsent(lockFinder, name -> new LongAdder()).increment();
+        }
+    }
+
+    /**
+     * @param phase A phase
+     * @return Total nanoseconds spent in it
+     */
+    public static long getNanos(Phase phase)
+    {
+        return phaseNanos[phase.ordinal()].sum();
+    }
+
+    /**
+     * @param counter A counter
+     * @return Its total
+     */
+    public static long getCount(Counter counter)
+    {
+        return counters[counter.ordinal()].sum();
+    }
+
+    /**
+     * @return How many statements each lock finder found locks or unlocks in
+     */
+    public static Map<String, Long> getLockFinderMatches()
+    {
+        Map<String, Long> matches = new TreeMap<>();
+        for ( Map.Entry<String, LongAdder> entry : lockFinderMatches.entrySet())
+        {
+            matches.put(entry.getKey(), entry.getValue().sum());
+        }
+        return matches;
+    }
+
+    /**
+     * @return Everything recorded so far, as one JSON object
+     */
+    public static String toJson()
+    {
+        StringBuilder json = new StringBuilder();
+        try
+        {
+            writeJson(json);
+        }
+        catch ( IOException e)
+        {
+            // Can't happen with a StringBuilder
+            throw new IllegalStateException(e);
+        }
+        return json.toString();
+    }
+
+    /**
+     * Write everything recorded so far as one JSON object:
+     * {"phases":{"name":{"calls":n,"millis":n.nnn},...},"counters":{...},"lockFinderMatches":{...}}
+     *
+     * @param out Where to write it
+     */
+    public static void writeJson(Appendable out) throws IOException
+    {
+        out.append("{\"phases\":{");
+        Phase[] phases = Phase.values();
+        for ( int i=0; i<phases.length; i++)
+        {
+            if ( i > 0)
+            {
+                out.append(',');
+            }
+            long nanos = phaseNanos[i].sum();
+            out.append('"').append(phases[i].jsonName).append("\":{\"calls\":")
+               .append(Long.toString(phaseCalls[i].sum()))
+               .append(",\"millis\":")
+               .append(String.format(Locale.ROOT, "%d.%03d", nanos / 1_000_000, (nanos / 1_000) % 1_000))
+               .append('}');
+        }
+
+        out.append("},\"counters\":{");
+        Counter[] allCounters = Counter.values();
+        for ( int i=0; i<allCounters.length; i++)
+        {
+            if ( i > 0)
+            {
+                out.append(',');
+            }
+            out.append('"').append(allCounters[i].jsonName).append("\":").append(Long.toString(counters[i].sum()));
+        }
+
+        out.append("},\"lockFinderMatches\":{");
+        boolean first = true;
+        for ( Map.Entry<String, Long> entry : getLockFinderMatches().entrySet())
+        {
+            if ( !first)
+            {
+                out.append(',');
+            }
+            first = false;
+            out.append(quote(entry.getKey())).append(':').append(Long.toString(entry.getValue()));
+        }
+        out.append("}}");
+    }
+
+    /**
+     * @param text Any text
+     * @return It as a JSON string (quotes included)
+     */
+    public static String quote(String text)
+    {
+        StringBuilder quoted = new StringBuilder(text.length() + 2).append('"');
+        for ( int i=0; i<text.length(); i++)
+        {
+            char current = text.charAt(i);
+            switch ( current)
+            {
+                case '"':
+                    quoted.append("\\\"");
+                    break;
+                case '\\':
+                    quoted.append("\\\\");
+                    break;
+                case '\n':
+                    quoted.append("\\n");
+                    break;
+                case '\r':
+                    quoted.append("\\r");
+                    break;
+                case '\t':
+                    quoted.append("\\t");
+                    break;
+                default:
+                    if ( current < 0x20)
+                    {
+                        quoted.append(String.format(Locale.ROOT, "\\u%04x", (int) current));
+                    }
+                    else
+                    {
+                        quoted.append(current);
+                    }
+                    break;
+            }
+        }
+        return quoted.append('"').toString();
+    }
+
+    private static LongAdder[] newAdders(int count)
+    {
+        LongAdder[] adders = new LongAdder[count];
+        for ( int i=0; i<count; i++)
+        {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+}
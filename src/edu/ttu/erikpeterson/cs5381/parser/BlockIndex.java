@@ -0,0 +1,179 @@
+package edu.ttu.erikpeterson.cs5381.parser;
+
+import java.util.Arrays;
+
+/**
+ * Index of every {...} block in a file, built in a single pass with a stack of open braces.
+ * Blocks are numbered in the order their '{' shows up, so a block's parent always comes before it.
+ *
+ * Alongside the matching braces we track statement boundaries (the last ';', '{' or '}' before each block),
+ * which is where the block's info (e.g. its method signature) starts. A ';' inside parentheses isn't a boundary,
+ * so a for ( ; ; ) loop keeps its whole header.
+ */
+class BlockIndex {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private int[] openBraces = new int[INITIAL_CAPACITY];
+    private int[] closeBraces = new int[INITIAL_CAPACITY];
+    private int[] infoStarts = new int[INITIAL_CAPACITY];
+    private int[] parents = new int[INITIAL_CAPACITY];
+    private int size = 0;
+
+    /**
+     * Constructor
+     *
+     * @param contents File contents, with comments and literals already removed
+     */
+    BlockIndex(String contents) throws BlockParsingException
+    {
+        // Blocks that haven't been closed yet, along with the parenthesis depth outside of each one
+        int[] openBlocks = new int[INITIAL_CAPACITY];
+        int[] outerParenDepths = new int[INITIAL_CAPACITY];
+        int openBlockCount = 0;
+
+        int parenDepth = 0;
+        int lastBoundary = -1;
+
+        for ( int position=0; position<contents.length(); position++)
+        {
+            switch ( contents.charAt(position))
+            {
+                case '(':
+                    parenDepth++;
+                    break;
+                case ')':
+                    if ( parenDepth > 0)
+                    {
+                        parenDepth--;
+                    }
+                    break;
+                case ';':
+                    if ( parenDepth == 0)
+                    {
+                        lastBoundary = position;
+                    }
+                    break;
+                case '{':
+                    if ( openBlockCount == openBlocks.length)
+                    {
+                        openBlocks = Arrays.copyOf(openBlocks, openBlockCount * 2);
+                        outerParenDepths = Arrays.copyOf(outerParenDepths, openBlockCount * 2);
+                    }
+                    openBlocks[openBlockCount] = addBlock(position,
+                                                          lastBoundary + 1,
+                                                          openBlockCount > 0 ? openBlocks[openBlockCount - 1] : -1);
+                    outerParenDepths[openBlockCount] = parenDepth;
+                    openBlockCount++;
+
+                    // Parentheses only count inside this block (e.g. the body of a lambda passed to a method)
+                    parenDepth = 0;
+                    lastBoundary = position;
+                    break;
+                case '}':
+                    if ( openBlockCount == 0)
+                    {
+                        throw new BlockParsingException("Unmatched '}' at position " + position);
+                    }
+                    openBlockCount--;
+                    closeBraces[openBlocks[openBlockCount]] = position;
+                    parenDepth = outerParenDepths[openBlockCount];
+                    lastBoundary = position;
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        if ( openBlockCount > 0)
+        {
+            throw new BlockParsingException("Unmatched '{' at position " + openBraces[openBlocks[openBlockCount - 1]]);
+        }
+    }
+
+    private BlockIndex(int capacity)
+    {
+        openBraces = new int[capacity];
+        closeBraces = new int[capacity];
+        infoStarts = new int[capacity];
+        parents = new int[capacity];
+    }
+
+    /**
+     * Copy out one block and everything nested in it, so the rest of the index can be let go
+     *
+     * @param block Block number
+     * @return Index with that block as block 0 (with no parent) and its nested blocks after it
+     */
+    BlockIndex copyOf(int block)
+    {
+        int end = getEndOfNested(block);
+        BlockIndex copy = new BlockIndex(end - block);
+        for ( int i=block; i<end; i++)
+        {
+            copy.addBlock(openBraces[i], infoStarts[i], i == block ? -1 : parents[i] - block);
+            copy.closeBraces[i - block] = closeBraces[i];
+        }
+        return copy;
+    }
+
+    private int addBlock(int openBrace, int infoStart, int parent)
+    {
+        if ( size == openBraces.length)
+        {
+            openBraces = Arrays.copyOf(openBraces, size * 2);
+            closeBraces = Arrays.copyOf(closeBraces, size * 2);
+            infoStarts = Arrays.copyOf(infoStarts, size * 2);
+            parents = Arrays.copyOf(parents, size * 2);
+        }
+        openBraces[size] = openBrace;
+        infoStarts[size] = infoStart;
+        parents[size] = parent;
+        return size++;
+    }
+
+    /**
+     * @return Number of blocks in the file
+     */
+    int size() { return size; }
+
+    /**
+     * @param block Block number
+     * @return Position of the block's '{'
+     */
+    int getOpenBrace(int block) { return openBraces[block]; }
+
+    /**
+     * @param block Block number
+     * @return Position of the block's matching '}'
+     */
+    int getCloseBrace(int block) { return closeBraces[block]; }
+
+    /**
+     * @param block Block number
+     * @return Start of the block's info (just after the previous statement boundary)
+     */
+    int getInfoStart(int block) { return infoStarts[block]; }
+
+    /**
+     * @param block Block number
+     * @return Number of the enclosing block, or -1 if this is a top-level block
+     */
+    int getParent(int block) { return parents[block]; }
+
+    /**
+     * Blocks are numbered in the order they open, so everything nested in a block comes right after it
+     *
+     * @param block Block number
+     * @return Number of the first block after this one that isn't nested in it (or the block count)
+     */
+    int getEndOfNested(int block)
+    {
+        int end = block + 1;
+        while ( end < size && openBraces[end] < closeBraces[block])
+        {
+            end++;
+        }
+        return end;
+    }
+}
@@ -1,21 +1,34 @@
 package edu.ttu.erikpeterson.cs5381.parser;
 
+import edu.ttu.erikpeterson.cs5381.instrumentation.Instrumentation;
 import edu.ttu.erikpeterson.cs5381.parser.block.CodeBlock;
 import edu.ttu.erikpeterson.cs5381.parser.block.CodeBlockFactory;
 import edu.ttu.erikpeterson.cs5381.parser.block.CodeBlockType;
+import edu.ttu.erikpeterson.cs5381.parser.block.MethodBlock;
+import edu.ttu.erikpeterson.cs5381.parser.block.SourceSlice;
+import edu.ttu.erikpeterson.cs5381.parser.lockCheckers.LockKeywordScanner;
 
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.util.ArrayList;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.Scanner;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 public class CodeBlockParser {
 
-    private static final Pattern CLASS_PATTERN = Pattern.compile("\\sclass\\s+(\\w+)");
+    /**
+     * Bump this whenever a change means the same file would be parsed into different blocks (or its calls would
+     * be looked up differently), so anything saved from an older parser (see {@link ParseCache}) is thrown away
+     */
+    public static final int PARSER_VERSION = 2;
+
+    // Interfaces are kept as classes too, so calls through them can be matched to their implementations
+    private static final Pattern CLASS_PATTERN = Pattern.compile("(?:^|\\s)(?:class|interface)\\s+(\\w+)");
     private static final Pattern SYNCHRONIZED_PATTERN = Pattern.compile("\\s*(synchronized)\\s*\\(");
 
     // Pattern for creating and submitting a future
@@ -31,7 +44,6 @@ public class CodeBlockParser {
     private static final Pattern MAIN_METHOD = Pattern.compile("public\\s+static\\s+void\\s+main\\s*\\(\\s*String\\s*\\[\\s*\\].+\\)");
 
     // Because the method pattern might match loops (for, while, etc.) we need to dispose of them first
-    // Note that a for loop is handled in code because our parsing doesn't capture all of it (just the increment part after the last ';')
     private static final Pattern FOR_PATTERN = Pattern.compile("\\s*for\\s*\\(.*;.*;.*\\)\\s*$");
     private static final Pattern FOR_EACH_PATTERN = Pattern.compile("for\\s\\(.*:.*\\)");
     private static final Pattern WHILE_PATTERN = Pattern.compile("(while)\\s*\\(");
@@ -44,34 +56,149 @@ public class CodeBlockParser {
     // Attempts to match a method. Because this could well match while and synchronized blocks, it needs to happen last
     private static final Pattern METHOD_PATTERN = Pattern.compile("(public|private|protected)?\\s*(static)?\\s*\\w*\\s+(\\w+)\\s*\\([\\w\\[\\]<>\\s,]*\\)");
 
+    /**
+     * Parse every file under a path on the calling thread
+     *
+     * @param directory File or directory to parse
+     * @return The blocks in all files found
+     */
     public static List<CodeBlock> parsePath(File directory) throws  FileNotFoundException, BlockParsingException {
+        return parsePath(directory, 1);
+    }
+
+    /**
+     * Parse every file under a path, spreading the files over a pool of threads.
+     * The blocks come back in the same order as a single-threaded parse, no matter how many threads are used.
+     *
+     * @param directory File or directory to parse
+     * @param numThreads Number of threads to parse with (1 or less parses on the calling thread)
+     * @return The blocks in all files found
+     */
+    public static List<CodeBlock> parsePath(File directory, int numThreads) throws FileNotFoundException, BlockParsingException {
+        return parsePath(directory, numThreads, false);
+    }
+
+    /**
+     * Parse every file under a path, spreading the files over a pool of threads.
+     * The blocks come back in the same order as a single-threaded parse, no matter how many threads are used.
+     *
+     * With lazy bodies, only classes, methods and whatever can start a thread are built up front. The blocks
+     * nested in every other method are built the first time that method's code is needed (e.g. when a walk
+     * reaches it), which skips most of the work for code that never locks. The results are the same.
+     *
+     * @param directory File or directory to parse
+     * @param numThreads Number of threads to parse with (1 or less parses on the calling thread)
+     * @param lazyBodies True to leave method bodies for later where we can
+     * @return The blocks in all files found
+     */
+    public static List<CodeBlock> parsePath(File directory, int numThreads, boolean lazyBodies) throws FileNotFoundException, BlockParsingException {
 
         if ( !directory.exists())
         {
             throw new FileNotFoundException("Directory " + directory.getAbsolutePath() + " can't be found!");
         }
 
-        if ( !directory.isDirectory())
+        List<File> files = new ArrayList<>();
+        findFiles(directory, files);
+
+        if ( numThreads <= 1 || files.size() <= 1)
         {
-            return parse(directory);
+            List<CodeBlock> codeBlocks = new ArrayList<>();
+            for ( File file : files)
+            {
+                codeBlocks.addAll(parse(file, lazyBodies));
+            }
+            return codeBlocks;
         }
 
-        List<CodeBlock> codeBlocks = new LinkedList<>();
+        ExecutorService threadPool = Executors.newFixedThreadPool(Math.min(numThreads, files.size()));
+        try
+        {
+            List<Future<List<CodeBlock>>> parsedFiles = new ArrayList<>(files.size());
+            for ( File file : files)
+            {
+                parsedFiles.add(threadPool.submit(() -> parse(file, lazyBodies)));
+            }
+
+            // Merge in file order (not completion order) so the output matches a sequential run
+            List<CodeBlock> codeBlocks = new ArrayList<>();
+            for ( int i=0; i<parsedFiles.size(); i++)
+            {
+                codeBlocks.addAll(getParseResult(parsedFiles.get(i), files.get(i)));
+            }
+            return codeBlocks;
+        }
+        finally
+        {
+            threadPool.shutdownNow();
+        }
+    }
+
+    /**
+     * Recursively gather the files to parse, in the order they're listed
+     *
+     * @param fileOrDirectory Where to look
+     * @param files List of files--expect stuff to be added to it!
+     */
+    static void findFiles(File fileOrDirectory, List<File> files)
+    {
+        if ( !fileOrDirectory.isDirectory())
+        {
+            files.add(fileOrDirectory);
+            return;
+        }
 
-        File[] fileListing = directory.listFiles();
+        File[] fileListing = fileOrDirectory.listFiles();
 
         if ( fileListing == null)
         {
             // Nothing here
-            return codeBlocks;
+            return;
         }
-        for ( File fileOrDirectory : fileListing)
+        for ( File subFileOrDirectory : fileListing)
         {
-            // If this is a file, the above if check will handle it
-            codeBlocks.addAll(parsePath(fileOrDirectory));
+            findFiles(subFileOrDirectory, files);
         }
+    }
 
-        return codeBlocks;
+    /**
+     * Wait for a file to finish parsing, passing along whatever went wrong
+     *
+     * @param parsedFile The pending parse
+     * @param file The file being parsed
+     * @return The blocks in that file
+     */
+    private static List<CodeBlock> getParseResult(Future<List<CodeBlock>> parsedFile, File file) throws FileNotFoundException, BlockParsingException {
+        try
+        {
+            return parsedFile.get();
+        }
+        catch ( InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new BlockParsingException("Interrupted while parsing " + file.getAbsolutePath());
+        }
+        catch ( ExecutionException e)
+        {
+            Throwable cause = e.getCause();
+            if ( cause instanceof FileNotFoundException)
+            {
+                throw (FileNotFoundException) cause;
+            }
+            if ( cause instanceof BlockParsingException)
+            {
+                throw (BlockParsingException) cause;
+            }
+            if ( cause instanceof RuntimeException)
+            {
+                throw (RuntimeException) cause;
+            }
+            if ( cause instanceof Error)
+            {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException("Unable to parse " + file.getAbsolutePath(), cause);
+        }
     }
 
     /**
@@ -79,155 +206,349 @@ public class CodeBlockParser {
      * @return The blocks in this file
      */
     public static List<CodeBlock> parse(File file) throws FileNotFoundException, BlockParsingException {
-        List<CodeBlock> codeBlocks = new LinkedList<>();
+        return parse(file, false);
+    }
 
-        String contents = new Scanner(file).useDelimiter("\\Z").next();
-        contents = removeAllComments(contents);
+    /**
+     * @param file File to parse
+     * @param lazyBodies True to leave method bodies for later where we can (see {@link #parsePath(File, int, boolean)})
+     * @return The blocks in this file
+     */
+    public static List<CodeBlock> parse(File file, boolean lazyBodies) throws FileNotFoundException, BlockParsingException {
+        return parseContents(SourceFileReader.read(file), lazyBodies);
+    }
 
-        int position = 0;
-        while (position < contents.length()) {
-            CodeBlock codeBlock = findBlock(contents, codeBlocks, position);
-            if ( codeBlock == null)
-            {
-                return codeBlocks;
-            }
-            position = codeBlock.getEndPosition() + 1;
-        }
+    /**
+     * @param contents Contents of a Java file
+     * @return The blocks in those contents
+     */
+    public static List<CodeBlock> parseContents(String contents) throws BlockParsingException {
+        return parseContents(contents, false);
+    }
 
+    /**
+     * @param contents Contents of a Java file
+     * @param lazyBodies True to leave method bodies for later where we can
+     * @return The blocks in those contents
+     */
+    public static List<CodeBlock> parseContents(String contents, boolean lazyBodies) throws BlockParsingException {
+        Instrumentation.count(Instrumentation.Counter.FILES_PARSED, 1);
+        Instrumentation.count(Instrumentation.Counter.CHARACTERS_PARSED, contents.length());
+
+        long start = Instrumentation.start();
+        contents = removeAllComments(contents);
+        Instrumentation.stop(Instrumentation.Phase.REMOVE_COMMENTS, start);
+
+        start = Instrumentation.start();
+        List<CodeBlock> codeBlocks = buildBlocks(contents, new BlockIndex(contents), lazyBodies);
+        Instrumentation.stop(Instrumentation.Phase.FIND_BLOCKS, start);
         return codeBlocks;
     }
 
-    private static String removeAllComments(String contents)
+    /**
+     * Blank out comments along with string, character and text block literals in a single pass.
+     * Whatever is removed is overwritten with spaces (line breaks are kept), so every character
+     * stays at the same offset and line.
+     *
+     * @param contents Java source
+     * @return The source with nothing but code left in it
+     */
+    public static String removeAllComments(String contents)
     {
-        // Remove all /*...*/, even if there are newlines in the middle
-        contents = contents.replaceAll("\\/\\*[\\W\\w]*\\*\\/", "");
+        char[] code = contents.toCharArray();
+        int length = code.length;
+        int position = 0;
 
-        // Remove all //....
-        contents = contents.replaceAll("\\/\\/.*\\r\\n", "");
+        while ( position < length)
+        {
+            char current = code[position];
+            char next = position + 1 < length ? code[position + 1] : 0;
 
-        // Remove all string literals
-        contents = contents.replaceAll("\\\".*\\\"", "");
+            if ( current == '/' && next == '/')
+            {
+                // Remove all //.... (up to, but not including, the line break)
+                int endOfLine = position;
+                while ( endOfLine < length && code[endOfLine] != '\n' && code[endOfLine] != '\r')
+                {
+                    endOfLine++;
+                }
+                position = blankOut(code, position, endOfLine);
+            }
+            else if ( current == '/' && next == '*')
+            {
+                // Remove /*...*/, even if there are newlines in the middle
+                int endOfComment = contents.indexOf("*/", position + 2);
+                position = blankOut(code, position, endOfComment < 0 ? length : endOfComment + 2);
+            }
+            else if ( current == '"' && next == '"' && position + 2 < length && code[position + 2] == '"')
+            {
+                position = blankOut(code, position, findEndOfTextBlock(code, position + 3));
+            }
+            else if ( current == '"' || current == '\'')
+            {
+                position = blankOut(code, position, findEndOfLiteral(code, position + 1, current));
+            }
+            else
+            {
+                position++;
+            }
+        }
 
-        return contents;
+        return new String(code);
     }
 
+    /**
+     * Find the end of a string or character literal. An unterminated literal ends at the end of its line.
+     *
+     * @param code Source being cleaned up
+     * @param position Position just after the opening quote
+     * @param quote The quote character that closes this literal
+     * @return Position just after the literal
+     */
+    private static int findEndOfLiteral(char[] code, int position, char quote)
+    {
+        while ( position < code.length)
+        {
+            char current = code[position];
+            if ( current == '\\')
+            {
+                // Skip whatever is escaped (including quotes)
+                position += 2;
+            }
+            else if ( current == quote)
+            {
+                return position + 1;
+            }
+            else if ( current == '\n' || current == '\r')
+            {
+                return position;
+            }
+            else
+            {
+                position++;
+            }
+        }
+        return code.length;
+    }
 
     /**
-     * Recursively find code blocks
+     * Find the end of a text block ("""...""")
      *
-     * @param fileContents Contents of the Java file
-     * @param codeBlocks List of code blocks--expect stuff to be added to it!
-     * @param startPosition Where to start looking in the file
-     * @return All class code blocks (methods and whatnot are held internally)
+     * @param code Source being cleaned up
+     * @param position Position just after the opening quotes
+     * @return Position just after the closing quotes
      */
-    private static CodeBlock findBlock(String fileContents, List<CodeBlock> codeBlocks, int startPosition) throws BlockParsingException {
-        int numBlocksToStart = codeBlocks.size();
-        int firstOpenBrace = fileContents.indexOf('{', startPosition);
-        int firstCloseBrace = fileContents.indexOf('}', startPosition);
-        if (firstOpenBrace < 0 || firstCloseBrace < firstOpenBrace) {
-            // No more blocks
-            return null;
+    private static int findEndOfTextBlock(char[] code, int position)
+    {
+        while ( position < code.length)
+        {
+            if ( code[position] == '\\')
+            {
+                position += 2;
+            }
+            else if ( code[position] == '"' &&
+                      position + 2 < code.length &&
+                      code[position + 1] == '"' &&
+                      code[position + 2] == '"')
+            {
+                return position + 3;
+            }
+            else
+            {
+                position++;
+            }
         }
+        return code.length;
+    }
 
-        // Grab the info for this block (the stuff just before the '}' and after the previous ';' or '}'
-        String blockInfo;
-        // Note that for loops (which include ';'s will be truncated here, but we don't need to identify them... :)
-        int previousSemicolonPosition = fileContents.lastIndexOf(';', firstOpenBrace-1);
-        int previousOpenBracePosition = fileContents.lastIndexOf('{', firstOpenBrace-1);
-        int previousCloseBracePosition = fileContents.lastIndexOf('}', firstOpenBrace-1);
-        int mostRecentPosition = Math.max(Math.max(previousSemicolonPosition, previousOpenBracePosition), previousCloseBracePosition)+1;
-        int blockInfoStart = 0;
-
-        // This is to check for for( ; ; ) { loops
-        Matcher forLoopMatcher = FOR_PATTERN.matcher(fileContents.substring(startPosition, firstOpenBrace));
-        if (mostRecentPosition < 0) {
-            blockInfo = fileContents.substring(0, startPosition);
-        } else if ( firstOpenBrace == mostRecentPosition) {
-            blockInfo = "";
-            blockInfoStart = mostRecentPosition;
-        } else if ( forLoopMatcher.find()) {
-            // We've found a for ( ; ; ) { loop
-            blockInfo = forLoopMatcher.group(0);
-            blockInfoStart = firstOpenBrace - blockInfo.length();
-        } else {
-            blockInfo = fileContents.substring(mostRecentPosition+1, firstOpenBrace);
-            blockInfoStart = mostRecentPosition+1;
+    /**
+     * Replace a range of code with spaces, leaving line breaks where they are
+     *
+     * @param code Source being cleaned up
+     * @param start First position to blank out
+     * @param end Position just after the last one to blank out
+     * @return The end position
+     */
+    private static int blankOut(char[] code, int start, int end)
+    {
+        end = Math.min(end, code.length);
+        for ( int i=start; i<end; i++)
+        {
+            if ( code[i] != '\n' && code[i] != '\r')
+            {
+                code[i] = ' ';
+            }
         }
+        return end;
+    }
 
-        int newStartPosition = firstOpenBrace + 1;
 
-        // See if there are blocks internal to us
-        int nextOpenParen = fileContents.indexOf('{', newStartPosition);
-        int nextCloseParen = fileContents.indexOf('}', newStartPosition);
+    /**
+     * Build the code blocks for a file from its block index. Since the index lists blocks in the order they
+     * start, each block's parent has already been built by the time we get to it.
+     *
+     * @param fileContents Contents of the Java file
+     * @param blockIndex Where every block in the file starts and ends
+     * @param lazyBodies True to leave the insides of methods that can't start a thread for later
+     * @return All class code blocks (methods and whatnot are held internally)
+     */
+    private static List<CodeBlock> buildBlocks(String fileContents, BlockIndex blockIndex, boolean lazyBodies) throws BlockParsingException {
+        List<CodeBlock> codeBlocks = new ArrayList<>();
+        CodeBlock[] allBlocks = new CodeBlock[blockIndex.size()];
+        buildBlocks(fileContents, blockIndex, 0, blockIndex.size(), allBlocks, codeBlocks, lazyBodies);
+        return codeBlocks;
+    }
 
-        if ( nextOpenParen > nextCloseParen)
+    /**
+     * Build a range of the blocks in a file
+     *
+     * @param fileContents Contents of the Java file
+     * @param blockIndex Where every block in the file starts and ends
+     * @param first First block to build (its parent, if any, has to be built already)
+     * @param end Block to stop at
+     * @param allBlocks Every block built so far, by block number--expect the range to be filled in!
+     * @param codeBlocks Where to put the classes found
+     * @param lazyBodies True to leave the insides of methods that can't start a thread for later
+     */
+    private static void buildBlocks(String fileContents,
+                                    BlockIndex blockIndex,
+                                    int first,
+                                    int end,
+                                    CodeBlock[] allBlocks,
+                                    List<CodeBlock> codeBlocks,
+                                    boolean lazyBodies) throws BlockParsingException {
+        for ( int block=first; block<end; block++)
         {
-            // We are a self-contained block
-            String blockContents = fileContents.substring(firstOpenBrace + 1, nextCloseParen);
-            CodeBlockType blockType = getBlockType(fileContents, blockInfo, blockInfoStart);
-            CodeBlock codeBlock = CodeBlockFactory.BuildBlock(blockInfo,
-                                                              blockType,
-                                                              blockContents,
+            int openBrace = blockIndex.getOpenBrace(block);
+            int closeBrace = blockIndex.getCloseBrace(block);
+            int blockInfoStart = blockIndex.getInfoStart(block);
+            int parent = blockIndex.getParent(block);
+
+            // Grab the info for this block (the stuff just before the '{' and after the previous ';', '{' or '}')
+            // Trim it before matching: comments are blanked out rather than removed, so there can be long runs of
+            // whitespace that our patterns would backtrack over
+            String blockInfo = fileContents.substring(blockInfoStart, openBrace).trim();
+
+            // If we're the first thing in our parent block, hand over the parent's info too (e.g. to
+            // see if we're the run() method in new Thread() { public void run() {...} })
+            CharSequence parentBlockInfo = null;
+            if ( parent >= 0 && blockInfoStart == blockIndex.getOpenBrace(parent) + 1)
+            {
+                parentBlockInfo = allBlocks[parent].getBlockInfoView();
+            }
+
+            CodeBlockType blockType = getBlockType(blockInfo, parentBlockInfo);
+            CodeBlock codeBlock = CodeBlockFactory.BuildBlock(blockType,
                                                               fileContents,
                                                               blockInfoStart,
-                                                              nextCloseParen);
-            addNameIfNeeded(codeBlock);
+                                                              openBrace,
+                                                              closeBrace);
+            addNameIfNeeded(codeBlock, blockInfo);
+            allBlocks[block] = codeBlock;
+
+            if ( parent >= 0)
+            {
+                allBlocks[parent].addCodeBlock(codeBlock);
+                codeBlock.setParent(allBlocks[parent]);
+            }
+
+            // Classes (inner ones included) come out in the order they start
             if ( blockType == CodeBlockType.CLASS)
             {
-                codeBlocks.add(numBlocksToStart, codeBlock);
+                codeBlocks.add(codeBlock);
             }
-            return codeBlock;
-        }
 
-        List<CodeBlock> subCodeBlocks = new ArrayList<>();
-        // Now recursively look for internal code blocks
-        while (true) {
-            CodeBlock internalCodeBlock = findBlock(fileContents, codeBlocks, newStartPosition);
-            if (internalCodeBlock == null) {
-                // No more internal blocks
-                break;
-            } else {
-                subCodeBlocks.add(internalCodeBlock);
-                // Need to look for more internal blocks
-                newStartPosition = internalCodeBlock.getEndPosition() + 1;
+            if ( lazyBodies && codeBlock instanceof MethodBlock)
+            {
+                int endOfBody = blockIndex.getEndOfNested(block);
+                if ( endOfBody > block + 1 && !mustParseBody(fileContents, blockInfoStart, closeBrace))
+                {
+                    checkBlockTypes(fileContents, blockIndex, block + 1, endOfBody);
+                    deferBody((MethodBlock) codeBlock, fileContents, blockIndex.copyOf(block));
+                    block = endOfBody - 1;
+                }
             }
         }
+    }
 
-        // Now that we've found all the internal code blocks, the next '}' is the end of our block
-        // Assuming well-formed code, and no '{' or '}' in comments....
-        int closeOfOurBlock = fileContents.indexOf('}', newStartPosition);
-        String blockContents = fileContents.substring(firstOpenBrace + 1, closeOfOurBlock);
-
-        // Add our code block so that it's before the sub-blocks (aka after everything that came before us)
-        CodeBlockType blockType = getBlockType(fileContents, blockInfo, blockInfoStart);
-        CodeBlock ourCodeBlock = CodeBlockFactory.BuildBlock(blockInfo,
-                                                             blockType,
-                                                             blockContents,
-                                                             fileContents,
-                                                             blockInfoStart,
-                                                             closeOfOurBlock);
-        addNameIfNeeded(ourCodeBlock);
-        ourCodeBlock.addCodeBlocks(subCodeBlocks);
-
-        for ( CodeBlock subBlock : subCodeBlocks)
-        {
-            subBlock.setParent(ourCodeBlock);
-        }
+    /**
+     * A method's nested blocks have to be built up front if they could hold a thread start or a class, since
+     * those are looked for before anything is walked. Bodies that lock are built up front too, since they'll
+     * almost certainly be walked.
+     *
+     * The method's own info is checked along with its body: in new Thread() { public void run() {...} } the
+     * anonymous class is read as a method, and only its info says that run() starts a thread.
+     */
+    private static boolean mustParseBody(String fileContents, int blockInfoStart, int closeBrace)
+    {
+        int keywords = LockKeywordScanner.scan(fileContents, blockInfoStart, closeBrace);
+        return (keywords & (LockKeywordScanner.LOCK_KEYWORDS |
+                            LockKeywordScanner.THREAD |
+                            LockKeywordScanner.SUBMIT |
+                            LockKeywordScanner.CLASS)) != 0;
+    }
 
-        if ( blockType == CodeBlockType.CLASS)
+    /**
+     * Make sure every block in a range has a type we know, without building any of them. A body that's left for
+     * later has to fail now if it's going to, so the file is turned down the same as it would be without lazy
+     * bodies.
+     *
+     * @param fileContents Contents of the Java file
+     * @param blockIndex Where every block in the file starts and ends
+     * @param first First block to check
+     * @param end Block to stop at
+     */
+    private static void checkBlockTypes(String fileContents, BlockIndex blockIndex, int first, int end) throws BlockParsingException
+    {
+        for ( int block=first; block<end; block++)
         {
-            codeBlocks.add(numBlocksToStart, ourCodeBlock);
+            int blockInfoStart = blockIndex.getInfoStart(block);
+            int parent = blockIndex.getParent(block);
+
+            CharSequence parentBlockInfo = null;
+            if ( parent >= 0 && blockInfoStart == blockIndex.getOpenBrace(parent) + 1)
+            {
+                parentBlockInfo = new SourceSlice(fileContents, blockIndex.getInfoStart(parent), blockIndex.getOpenBrace(parent));
+            }
+
+            getBlockType(fileContents.substring(blockInfoStart, blockIndex.getOpenBrace(block)).trim(), parentBlockInfo);
         }
-        return ourCodeBlock;
     }
 
-    private static void addNameIfNeeded(CodeBlock codeBlock)
+    /**
+     * Leave a method's nested blocks to be built the first time they're needed
+     *
+     * @param methodBlock The method
+     * @param fileContents Contents of the Java file (the method's blocks point into it anyway)
+     * @param methodIndex Just the method's part of the block index (see {@link BlockIndex#copyOf(int)})
+     */
+    private static void deferBody(MethodBlock methodBlock, String fileContents, BlockIndex methodIndex)
+    {
+        methodBlock.setDeferredBody(() -> {
+            CodeBlock[] bodyBlocks = new CodeBlock[methodIndex.size()];
+            bodyBlocks[0] = methodBlock;
+            try
+            {
+                buildBlocks(fileContents, methodIndex, 1, methodIndex.size(), bodyBlocks, new ArrayList<>(), false);
+            }
+            catch ( BlockParsingException e)
+            {
+                // Shouldn't happen since the block types were checked up front, but it's too late to turn the
+                // file down now; the method is read as if it had no nested blocks
+                methodBlock.getSubCodeBlocks().clear();
+                Instrumentation.count(Instrumentation.Counter.BODIES_UNPARSEABLE, 1);
+            }
+        });
+        Instrumentation.count(Instrumentation.Counter.BODIES_DEFERRED, 1);
+    }
+
+    private static void addNameIfNeeded(CodeBlock codeBlock, String blockInfo)
     {
         CodeBlockType blockType = codeBlock.getBlockType();
         if ( blockType == CodeBlockType.CLASS)
         {
             // Grab the class name
-            Matcher classMatcher = CLASS_PATTERN.matcher(codeBlock.getBlockInfo());
+            Matcher classMatcher = CLASS_PATTERN.matcher(blockInfo);
             if ( classMatcher.find())
             {
                 codeBlock.setName(classMatcher.group(1));
@@ -236,7 +557,7 @@ public class CodeBlockParser {
         else if ( blockType == CodeBlockType.METHOD || blockType == CodeBlockType.THREAD_ENTRY)
         {
             // Grab the method name
-            Matcher methodMatcher = METHOD_PATTERN.matcher(codeBlock.getBlockInfo());
+            Matcher methodMatcher = METHOD_PATTERN.matcher(blockInfo);
             if ( methodMatcher.find())
             {
                 codeBlock.setName(methodMatcher.group(3));
@@ -244,7 +565,14 @@ public class CodeBlockParser {
         }
     }
 
-    private static CodeBlockType getBlockType(String fullText, String blockInfo, int blockInfoPosition) throws BlockParsingException
+    /**
+     * Figure out what kind of block this is
+     *
+     * @param blockInfo The block's info
+     * @param parentBlockInfo The enclosing block's info, if this block is the first thing in it (null otherwise)
+     * @return The block type
+     */
+    private static CodeBlockType getBlockType(String blockInfo, CharSequence parentBlockInfo) throws BlockParsingException
     {
         blockInfo = blockInfo.trim();
         // Check for class " ... class ... "
@@ -258,7 +586,8 @@ public class CodeBlockParser {
             return CodeBlockType.SYNCHRONIZED;
         }
 
-        // Our parser will catch only the "i++)" part of a for loop because we look back to the last ';'
+        // A block whose info closes a parenthesis it never opened is something we can't name (e.g. the rest of a
+        // statement that was split up by a '{' inside parentheses)
         if ( blockInfo.contains(")") && !blockInfo.contains("("))
         {
             return CodeBlockType.CODE_BLOCK;
@@ -276,8 +605,8 @@ public class CodeBlockParser {
         // e.g. new Thread() { public void run() {...} }
         // This requires looking just before the current method
         if ( THREAD_RUN_METHOD_PATTERN.matcher(blockInfo).find() &&
-             blockInfoPosition > 1 &&
-             THREAD_CREATION_JUST_FINISHED_PATTERN.matcher(fullText.substring(0, blockInfoPosition - 2)).find())
+             parentBlockInfo != null &&
+             THREAD_CREATION_JUST_FINISHED_PATTERN.matcher(parentBlockInfo).find())
         {
             return CodeBlockType.THREAD_ENTRY;
         }
@@ -1,24 +1,43 @@
 package edu.ttu.erikpeterson.cs5381.parser;
 
+import edu.ttu.erikpeterson.cs5381.instrumentation.Instrumentation;
 import edu.ttu.erikpeterson.cs5381.parser.block.CodeBlock;
 import edu.ttu.erikpeterson.cs5381.parser.block.CodeBlockType;
+import edu.ttu.erikpeterson.cs5381.parser.block.HeldLockSets;
 import edu.ttu.erikpeterson.cs5381.parser.block.LockInfo;
+import edu.ttu.erikpeterson.cs5381.parser.block.LongArrayList;
 import edu.ttu.erikpeterson.cs5381.parser.block.MethodBlock;
+import edu.ttu.erikpeterson.cs5381.parser.block.SymbolIndex;
+import edu.ttu.erikpeterson.cs5381.parser.block.WalkContext;
 import edu.ttu.erikpeterson.cs5381.parser.lockCheckers.LockFinder;
 import edu.ttu.erikpeterson.cs5381.parser.lockCheckers.LockFinderFactory;
 
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 public class CodeWalker {
-    private final List<CodeBlock> codeBlockList;
+    private final SymbolIndex symbolIndex;
     private final List<MethodBlock> threadStarts = new ArrayList<>();
-    private Map<MethodBlock, List<LockInfo>> allLockInfo = new HashMap<>();
+    // Each thread's lock events (packed, see LockSymbolTable). Kept in thread start order so the
+    // deadlock scan always sees the threads the same way
+    private Map<MethodBlock, LongArrayList> allLockInfo = new LinkedHashMap<>();
+    // Or, with the lock set abstraction on, just the sets of locks each thread held at once
+    private Map<MethodBlock, HeldLockSets> allLockSets = new LinkedHashMap<>();
 
-    private List<LockFinder> lockFinders = LockFinderFactory.buildAllLockFinders(null);
+    private final List<LockFinder> lockFinders = LockFinderFactory.getAllLockFinders();
+
+    private int maxCallDepth = WalkContext.DEFAULT_MAX_DEPTH;
+    private int maxMethodsPerThread = WalkContext.DEFAULT_MAX_METHODS;
+    private boolean lockSetAbstraction;
+    // Totals over every thread walked
+    private int callDepthReached;
+    private int pathsTruncated;
+    private int recursiveCallsSkipped;
 
     public CodeWalker(List<CodeBlock> codeBlockList)
     {
-        this.codeBlockList = codeBlockList;
+        this.symbolIndex = new SymbolIndex(codeBlockList);
         for ( CodeBlock codeBlock : codeBlockList) {
             addThreadEntryBlocks(codeBlock);
         }
@@ -30,13 +49,106 @@ public class CodeWalker {
     }
 
     /**
-     * Walk through all the identified threads
+     * Set how deep calls are followed from each thread start. Calls past that are skipped (and counted in
+     * {@link #getPathsTruncated()}). Only affects walks started after this.
+     *
+     * @param maxCallDepth Maximum call depth, counting the thread start as 1
+     */
+    public void setMaxCallDepth(int maxCallDepth)
+    {
+        if ( maxCallDepth < 1)
+        {
+            throw new IllegalArgumentException("Maximum call depth must be at least 1, not " + maxCallDepth);
+        }
+        this.maxCallDepth = maxCallDepth;
+    }
+
+    /**
+     * Set how many methods each thread's walk can enter in all, counting a method each time it's walked. This
+     * is what keeps a call graph that fans out from taking exponential time; calls past it are skipped (and
+     * counted in {@link #getPathsTruncated()}). Only affects walks started after this.
+     *
+     * @param maxMethodsPerThread Maximum methods walked per thread
+     */
+    public void setMaxMethodsPerThread(int maxMethodsPerThread)
+    {
+        if ( maxMethodsPerThread < 1)
+        {
+            throw new IllegalArgumentException("Maximum methods walked must be at least 1, not " + maxMethodsPerThread);
+        }
+        this.maxMethodsPerThread = maxMethodsPerThread;
+    }
+
+    /**
+     * Choose whether each thread keeps every lock event it found, or only the distinct sets of locks it held
+     * at once. The deadlocks found are the same either way, but the sets only grow with the number of
+     * distinct sets rather than with how many times the locks are taken. Only affects walks started after this.
+     *
+     * @param lockSetAbstraction True to keep only the held lock sets
+     */
+    public void setLockSetAbstraction(boolean lockSetAbstraction)
+    {
+        this.lockSetAbstraction = lockSetAbstraction;
+    }
+
+    /**
+     * @return The deepest any thread's walk went
+     */
+    public int getCallDepthReached() { return callDepthReached; }
+
+    /**
+     * @return How many calls weren't followed, over all threads, because they were past the maximum depth
+     *         or the thread's walk was out of methods
+     */
+    public int getPathsTruncated() { return pathsTruncated; }
+
+    /**
+     * @return How many calls weren't followed, over all threads, because they would have been recursion
+     */
+    public int getRecursiveCallsSkipped() { return recursiveCallsSkipped; }
+
+    /**
+     * Walk through all the identified threads, one at a time
      */
     public void walkAllThreadStarts()
     {
-        for ( MethodBlock threadStart : threadStarts)
+        walkAllThreadStarts(1);
+    }
+
+    /**
+     * Walk through all the identified threads, spreading them over a work-stealing pool.
+     * The results are the same (and in the same order) no matter how many threads are used.
+     *
+     * @param numThreads Number of threads to walk with (1 or less walks on the calling thread)
+     */
+    public void walkAllThreadStarts(int numThreads)
+    {
+        if ( numThreads <= 1 || threadStarts.size() <= 1)
+        {
+            for ( MethodBlock threadStart : threadStarts)
+            {
+                addWalk(threadStart, walkThread(threadStart));
+            }
+            return;
+        }
+
+        ForkJoinPool threadPool = new ForkJoinPool(numThreads);
+        try
+        {
+            List<ForkJoinTask<WalkContext>> walks = new ArrayList<>(threadStarts.size());
+            for ( MethodBlock threadStart : threadStarts)
+            {
+                walks.add(threadPool.submit(() -> walkThread(threadStart)));
+            }
+
+            for ( int i=0; i<threadStarts.size(); i++)
+            {
+                addWalk(threadStarts.get(i), walks.get(i).join());
+            }
+        }
+        finally
         {
-            allLockInfo.put(threadStart, walkThread(threadStart));
+            threadPool.shutdown();
         }
     }
 
@@ -44,144 +156,168 @@ public class CodeWalker {
      * Walk thorugh a specific thread
      * @param thread The code block to walk
      */
-    private List<LockInfo> walkThread(MethodBlock thread)
+    private WalkContext walkThread(MethodBlock thread)
     {
-        List<LockInfo> lockInfo = new ArrayList<>();
-        thread.walkMethod(codeBlockList, lockInfo);
+        long start = Instrumentation.start();
+        WalkContext context;
+        if ( lockSetAbstraction)
+        {
+            context = new WalkContext(symbolIndex, new HeldLockSets(), maxCallDepth, maxMethodsPerThread);
+            thread.walkMethod(context);
+            context.getHeldLockSets().finish();
+            Instrumentation.count(Instrumentation.Counter.LOCK_EVENTS, context.getHeldLockSets().getEventCount());
+        }
+        else
+        {
+            context = new WalkContext(symbolIndex, new LongArrayList(), maxCallDepth, maxMethodsPerThread);
+            thread.walkMethod(context);
+            Instrumentation.count(Instrumentation.Counter.LOCK_EVENTS, context.getLockEvents().size());
+        }
+        Instrumentation.stop(Instrumentation.Phase.WALK_METHODS, start);
 
-        return lockInfo;
+        return context;
+    }
+
+    private void addWalk(MethodBlock thread, WalkContext context)
+    {
+        if ( context.getHeldLockSets() != null)
+        {
+            allLockSets.put(thread, context.getHeldLockSets());
+            allLockInfo.remove(thread);
+        }
+        else
+        {
+            allLockInfo.put(thread, context.getLockEvents());
+            allLockSets.remove(thread);
+        }
+        callDepthReached = Math.max(callDepthReached, context.getDepthReached());
+        pathsTruncated += context.getPathsTruncated();
+        recursiveCallsSkipped += context.getRecursiveCallsSkipped();
     }
 
     /**
      * Scan for and return deadlocks
+     *
      * @return Info on the potential deadlocks, if any
      */
     public List<String> findDeadlocks()
     {
         List<String> deadlockInfo = new ArrayList<>();
+        findDeadlocks(deadlock -> deadlockInfo.add(deadlock.getMessage()));
+        return deadlockInfo;
+    }
 
-        List<List<LockInfo>> allLockCombinations = new ArrayList<>();
-
-        for ( MethodBlock threadStart : allLockInfo.keySet())
+    /**
+     * Scan for deadlocks, handing each one over as soon as it's found. Every thread's lock combinations go
+     * into one lock-order graph (A -> B when B was taken while A was held), and each cycle in it is a
+     * potential deadlock.
+     *
+     * @param listener Gets each deadlock
+     */
+    public void findDeadlocks(DeadlockListener listener)
+    {
+        long start = Instrumentation.start();
+        LockOrderGraph lockOrderGraph = new LockOrderGraph(symbolIndex.getLockTable());
+        for ( MethodBlock threadStart : threadStarts)
         {
-            List<LockInfo> thisThreadsLockInfo = allLockInfo.get(threadStart);
-            if ( thisThreadsLockInfo.isEmpty())
+            if ( allLockSets.containsKey(threadStart))
             {
-                continue;
+                lockOrderGraph.addThread(threadStart, allLockSets.get(threadStart));
+            }
+            else if ( allLockInfo.containsKey(threadStart))
+            {
+                lockOrderGraph.addThread(threadStart, allLockInfo.get(threadStart));
             }
+        }
 
-            List<LockInfo> lockCombination = new ArrayList<>();
+        List<List<LockOrderGraph.Edge>> cycles = lockOrderGraph.findCycles();
+        Instrumentation.stop(Instrumentation.Phase.FIND_DEADLOCKS, start);
 
-            for ( LockInfo info : thisThreadsLockInfo)
+        for ( List<LockOrderGraph.Edge> cycle : cycles)
+        {
+            start = Instrumentation.start();
+            List<MethodBlock> threadStarts = verifyCycle(lockOrderGraph, cycle);
+            Instrumentation.stop(Instrumentation.Phase.CHECK_LOCK_COMBINATIONS, start);
+            if ( threadStarts == null)
             {
-                if ( info.isLock())
-                {
-                    lockCombination.add(info);
-                }
-                else
-                {
-                    // Is an unlock. If there's more than one in this combination, we need to check it
-                    // before removing it from the "current" list
-                    if ( lockCombination.size() > 1)
-                    {
-                        checkLockCombination(allLockCombinations, lockCombination, deadlockInfo);
-
-                        // Save this lock combination for later
-                        // Have to copy it since this list will change!
-                        List<LockInfo> thisCombination = new ArrayList<>();
-                        thisCombination.addAll(lockCombination);
-                        allLockCombinations.add(thisCombination);
-                    }
-                    // Now remove the matching lock (not the one we just found since it's an unlock)
-                    lockCombination.remove(new LockInfo(info, true));
-                }
+                continue;
             }
 
-            // Handle the last lock combination, if any
-            if ( lockCombination.size() > 1)
+            // Found a potential deadlock!
+            List<LockInfo> locks = new ArrayList<>(cycle.size());
+            for ( LockOrderGraph.Edge edge : cycle)
             {
-                checkLockCombination(allLockCombinations, lockCombination, deadlockInfo);
-                allLockCombinations.add(lockCombination);
+                locks.add(lockOrderGraph.getFrom(edge));
             }
-
+            listener.deadlockFound(new Deadlock(locks, threadStarts));
         }
-
-        return deadlockInfo;
-
     }
 
-    private void checkLockCombination(List<List<LockInfo>> existingCombinations, List<LockInfo> currentCombinations, List<String> deadlockInfo)
+    /**
+     * Give the lock finders a chance to deny a cycle is a deadlock (for example, ReadWriteLocks
+     * are not deadlocks if they only involve readLocks). Each step of the cycle has to hold up
+     * against the next step for at least one pair of lock combinations.
+     *
+     * @param lockOrderGraph The graph the cycle came from
+     * @param cycle The cycle's edges, in order
+     * @return Where the thread behind each step starts, or null if this isn't a deadlock
+     */
+    private List<MethodBlock> verifyCycle(LockOrderGraph lockOrderGraph, List<LockOrderGraph.Edge> cycle)
     {
-        if ( existingCombinations.isEmpty())
+        List<MethodBlock> threadStarts = new ArrayList<>(cycle.size());
+        for ( int i=0; i<cycle.size(); i++)
         {
-            return;
-        }
+            LockOrderGraph.Edge edge = cycle.get(i);
+            LockOrderGraph.Edge nextEdge = cycle.get((i + 1) % cycle.size());
+            LockInfo first = lockOrderGraph.getFrom(edge);
+            LockInfo second = lockOrderGraph.getTo(edge);
 
-        // We need to check the other lock combinations to see if out particular combination has any elements
-        // in a different order elsewhere
-        //
-        // We'll find it by checking the positions of our locks against the positions of the existing combinations.
-        // If
-        for ( List<LockInfo> existingCombination : existingCombinations)
-        {
-            int lastPosition = 0;
-            List<Integer> positions = new ArrayList<>();
-            for ( LockInfo ourLockInfo : currentCombinations)
+            // Each combination is only turned into LockInfos once, not once per pair
+            List<List<LockInfo>> nextCombinations = new ArrayList<>(nextEdge.getWitnesses().size());
+            for ( LockOrderGraph.Witness nextWitness : nextEdge.getWitnesses())
             {
-                int position = existingCombination.indexOf(ourLockInfo);
-                if ( position < 0)
-                {
-                    // To make the length of our index list match the other one...and to keep the later
-                    // check from freaking out over a missing lock, reuse the last position
-                    positions.add(lastPosition);
-                }
-                else
-                {
-                    // Found this lock in the other combination
-                    positions.add(position);
-                    lastPosition = position;
-                }
+                nextCombinations.add(lockOrderGraph.getCombination(nextWitness));
             }
 
-            // Now let's see if there's a different order
-            lastPosition = 0;
-            // Keep track of the last lock we actually found. A lock that is not found in the other list will share the index
-            // of the previous lock.
-            int lastChangeIndex = 0;
-            for ( int i=0; i<positions.size(); i++)
+            MethodBlock threadStart = null;
+            for ( LockOrderGraph.Witness witness : edge.getWitnesses())
             {
-                int currentPosition = positions.get(i);
-                if ( positions.get(i) < lastPosition)
+                List<LockInfo> combination = lockOrderGraph.getCombination(witness);
+                for ( List<LockInfo> nextCombination : nextCombinations)
                 {
-                    // Give the lock finders a chance to deny this is a deadlock (for example, ReadWriteLocks
-                    // are not deadlocks if they only involve readLocks)
-                    boolean isDeadlock = true;
-                    for ( LockFinder finder : lockFinders)
+                    if ( verifyDeadlock(first, second, combination, nextCombination))
                     {
-                        if ( !finder.verifyDeadlock(currentCombinations.get(lastChangeIndex), currentCombinations.get(i), existingCombination, currentCombinations))
-                        {
-                            // This isn't a deadlock
-                            isDeadlock = false;
-                            break;
-                        }
+                        threadStart = witness.getThreadStart();
+                        break;
                     }
-
-                    if ( isDeadlock)
-                    {
-                        // Found a potential deadlock!
-                        deadlockInfo.add("Potential deadlock between variables " +
-                                         currentCombinations.get(lastChangeIndex) + " and " +
-                                         currentCombinations.get(i));
-                    }
-                    lastChangeIndex = i;
                 }
-                else if ( positions.get(i) > lastPosition)
+                if ( threadStart != null)
                 {
-                    lastChangeIndex = i;
+                    break;
                 }
-                lastPosition = currentPosition;
+            }
+
+            if ( threadStart == null)
+            {
+                return null;
+            }
+            threadStarts.add(threadStart);
+        }
+        return threadStarts;
+    }
+
+    private boolean verifyDeadlock(LockInfo first, LockInfo second, List<LockInfo> firstCombination, List<LockInfo> secondCombination)
+    {
+        Instrumentation.count(Instrumentation.Counter.COMBINATIONS_COMPARED, 1);
+        for ( LockFinder finder : lockFinders)
+        {
+            if ( !finder.verifyDeadlock(first, second, firstCombination, secondCombination))
+            {
+                // This isn't a deadlock
+                return false;
             }
         }
+        return true;
     }
 
     /**
@@ -0,0 +1,94 @@
+package edu.ttu.erikpeterson.cs5381.parser;
+
+import edu.ttu.erikpeterson.cs5381.parser.block.LockInfo;
+import edu.ttu.erikpeterson.cs5381.parser.block.MethodBlock;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A potential deadlock: locks that threads take in a circle. Step i of the circle is a thread (starting at
+ * thread start i) that holds lock i and then takes the next lock along. Most deadlocks are just two locks
+ * taken in opposite orders.
+ */
+public class Deadlock {
+
+    private final List<LockInfo> locks;
+    private final List<MethodBlock> threadStarts;
+
+    /**
+     * Constructor
+     *
+     * @param locks The locks in the circle, in order
+     * @param threadStarts Where the thread that goes from each lock to the next starts
+     */
+    Deadlock(List<LockInfo> locks, List<MethodBlock> threadStarts)
+    {
+        this.locks = Collections.unmodifiableList(locks);
+        this.threadStarts = Collections.unmodifiableList(threadStarts);
+    }
+
+    /**
+     * @return The locks in the circle, in order (where each was found is in the LockInfo)
+     */
+    public List<LockInfo> getLocks() { return locks; }
+
+    /**
+     * @return Where the thread that goes from each lock to the next starts
+     */
+    public List<MethodBlock> getThreadStarts() { return threadStarts; }
+
+    public LockInfo getFirstLock() { return locks.get(0); }
+
+    public LockInfo getSecondLock() { return locks.get(1); }
+
+    /**
+     * @return Where the thread that holds the first lock and takes the second starts
+     */
+    public MethodBlock getFirstThreadStart() { return threadStarts.get(0); }
+
+    /**
+     * @return Where the thread that holds the second lock and takes the next one starts
+     */
+    public MethodBlock getSecondThreadStart() { return threadStarts.get(1); }
+
+    /**
+     * @return Class and method names of the thread starts, in order
+     */
+    public String getThreadLocations()
+    {
+        StringBuilder locations = new StringBuilder();
+        for ( MethodBlock threadStart : threadStarts)
+        {
+            if ( locations.length() > 0)
+            {
+                locations.append(", ");
+            }
+            locations.append(threadStart.getClassAndName());
+        }
+        return locations.toString();
+    }
+
+    /**
+     * @return The message we've always printed for a deadlock
+     */
+    public String getMessage()
+    {
+        StringBuilder message = new StringBuilder("Potential deadlock between variables ");
+        for ( int i=0; i<locks.size(); i++)
+        {
+            if ( i > 0)
+            {
+                message.append(i == locks.size() - 1 ? " and " : ", ");
+            }
+            message.append(locks.get(i));
+        }
+        return message.toString();
+    }
+
+    @Override
+    public String toString()
+    {
+        return getMessage();
+    }
+}
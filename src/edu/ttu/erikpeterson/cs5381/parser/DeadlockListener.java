@@ -0,0 +1,12 @@
+package edu.ttu.erikpeterson.cs5381.parser;
+
+/**
+ * Hears about each deadlock as soon as it's found
+ */
+public interface DeadlockListener {
+
+    /**
+     * @param deadlock The deadlock just found
+     */
+    void deadlockFound(Deadlock deadlock);
+}
@@ -0,0 +1,404 @@
+package edu.ttu.erikpeterson.cs5381.parser;
+
+import edu.ttu.erikpeterson.cs5381.parser.block.HeldLockSets;
+import edu.ttu.erikpeterson.cs5381.parser.block.IntArrayList;
+import edu.ttu.erikpeterson.cs5381.parser.block.LockInfo;
+import edu.ttu.erikpeterson.cs5381.parser.block.LockSymbolTable;
+import edu.ttu.erikpeterson.cs5381.parser.block.LongArrayList;
+import edu.ttu.erikpeterson.cs5381.parser.block.MethodBlock;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Which locks get taken while which other locks are held. An edge A -> B means some thread took B while holding A.
+ * A cycle in this graph (A -> B -> A, or A -> B -> C -> A, ...) is a potential deadlock.
+ *
+ * Cycles are found by splitting the graph into strongly connected components (Tarjan's algorithm); only locks in
+ * the same component can be part of a cycle.
+ *
+ * Everything is done with lock ids from the {@link LockSymbolTable}; LockInfos only come out for the cycles found.
+ */
+class LockOrderGraph {
+
+    /**
+     * A set of locks held at the same time by a thread, in the order they were taken
+     */
+    static final class Witness {
+        private final MethodBlock threadStart;
+        // Where each lock came from (see LockSymbolTable)
+        private final int[] sites;
+
+        private Witness(MethodBlock threadStart, int[] sites)
+        {
+            this.threadStart = threadStart;
+            this.sites = sites;
+        }
+
+        MethodBlock getThreadStart() { return threadStart; }
+    }
+
+    /**
+     * One lock taken while holding another, along with every lock combination where that happened
+     */
+    static final class Edge {
+        private final int from;
+        private final int to;
+        private final List<Witness> witnesses = new ArrayList<>();
+
+        private Edge(int from, int to)
+        {
+            this.from = from;
+            this.to = to;
+        }
+
+        List<Witness> getWitnesses() { return witnesses; }
+    }
+
+    private final LockSymbolTable lockTable;
+    // Lock id -> node (or -1 if the lock isn't in the graph yet)
+    private int[] lockNodes = new int[0];
+    // Node -> the site of the first time we saw its lock, which is what gets reported
+    private final IntArrayList nodeSites = new IntArrayList();
+    private final List<List<Edge>> outgoingEdges = new ArrayList<>();
+    private final List<Edge> edges = new ArrayList<>();
+
+    /**
+     * Constructor
+     *
+     * @param lockTable Where the lock ids in the events come from
+     */
+    LockOrderGraph(LockSymbolTable lockTable)
+    {
+        this.lockTable = lockTable;
+    }
+
+    /**
+     * Add everything a thread did with locks
+     *
+     * @param threadStart Where the thread starts
+     * @param lockEvents The thread's locks and unlocks, in order (packed, see {@link LockSymbolTable})
+     */
+    void addThread(MethodBlock threadStart, LongArrayList lockEvents)
+    {
+        // A thread that keeps taking the same locks (say, in a loop) only needs to be recorded once
+        HeldLockSets heldLockSets = new HeldLockSets();
+        heldLockSets.addAll(lockEvents);
+        heldLockSets.finish();
+        addThread(threadStart, heldLockSets);
+    }
+
+    /**
+     * Add a thread that was already boiled down to the sets of locks it held
+     *
+     * @param threadStart Where the thread starts
+     * @param heldLockSets The thread's (finished) held lock sets
+     */
+    void addThread(MethodBlock threadStart, HeldLockSets heldLockSets)
+    {
+        for ( int set=0; set<heldLockSets.size(); set++)
+        {
+            int[] lockIds = heldLockSets.getLockIds(set);
+            int[] sites = heldLockSets.getSites(set);
+            Witness witness = new Witness(threadStart, sites);
+
+            for ( int i=0; i<lockIds.length; i++)
+            {
+                for ( int j=i+1; j<lockIds.length; j++)
+                {
+                    int from = getNode(lockIds[i], sites[i]);
+                    int to = getNode(lockIds[j], sites[j]);
+                    if ( from != to)
+                    {
+                        getEdge(from, to).witnesses.add(witness);
+                    }
+                }
+            }
+        }
+    }
+
+    private int getNode(int lockId, int site)
+    {
+        if ( lockId >= lockNodes.length)
+        {
+            int oldLength = lockNodes.length;
+            lockNodes = Arrays.copyOf(lockNodes, Math.max(lockId + 1, Math.max(lockTable.getLockCount(), oldLength * 2)));
+            Arrays.fill(lockNodes, oldLength, lockNodes.length, -1);
+        }
+
+        int node = lockNodes[lockId];
+        if ( node < 0)
+        {
+            node = nodeSites.size();
+            lockNodes[lockId] = node;
+            nodeSites.add(site);
+            outgoingEdges.add(new ArrayList<>());
+        }
+        return node;
+    }
+
+    private Edge getEdge(int from, int to)
+    {
+        // A lock is only ever held with a few others, so a scan beats a map here
+        List<Edge> fromEdges = outgoingEdges.get(from);
+        for ( int i=0; i<fromEdges.size(); i++)
+        {
+            if ( fromEdges.get(i).to == to)
+            {
+                return fromEdges.get(i);
+            }
+        }
+
+        Edge edge = new Edge(from, to);
+        edges.add(edge);
+        fromEdges.add(edge);
+        return edge;
+    }
+
+    /**
+     * @param edge An edge in this graph
+     * @return The lock that was held
+     */
+    LockInfo getFrom(Edge edge)
+    {
+        return lockTable.getLockInfo(nodeSites.get(edge.from));
+    }
+
+    /**
+     * @param edge An edge in this graph
+     * @return The lock that was taken
+     */
+    LockInfo getTo(Edge edge)
+    {
+        return lockTable.getLockInfo(nodeSites.get(edge.to));
+    }
+
+    /**
+     * @param witness A witness from one of this graph's edges
+     * @return The locks it held, in the order they were taken
+     */
+    List<LockInfo> getCombination(Witness witness)
+    {
+        List<LockInfo> combination = new ArrayList<>(witness.sites.length);
+        for ( int site : witness.sites)
+        {
+            combination.add(lockTable.getLockInfo(site));
+        }
+        return combination;
+    }
+
+    /**
+     * Find the lock cycles. Every edge that's part of a cycle contributes the shortest cycle through it,
+     * so each pair of locks taken in opposite orders shows up as its own cycle.
+     *
+     * @return Each cycle as the edges that make it up, in order
+     */
+    List<List<Edge>> findCycles()
+    {
+        int[] components = findStronglyConnectedComponents();
+        List<List<Edge>> cycles = new ArrayList<>();
+        Set<CycleKey> cyclesSeen = new HashSet<>();
+
+        // Shared by every search, so nothing is allocated per node visited
+        int nodeCount = nodeSites.size();
+        Edge[] reachedBy = new Edge[nodeCount];
+        int[] searchReached = new int[nodeCount];
+        int[] toVisit = new int[nodeCount];
+        int search = 0;
+
+        for ( Edge edge : edges)
+        {
+            if ( components[edge.from] != components[edge.to])
+            {
+                // Can't be part of a cycle
+                continue;
+            }
+
+            List<Edge> cycle = findShortestCycle(edge, components, reachedBy, searchReached, toVisit, ++search);
+            if ( cyclesSeen.add(new CycleKey(cycle)))
+            {
+                cycles.add(cycle);
+            }
+        }
+
+        return cycles;
+    }
+
+    /**
+     * Tarjan's strongly connected components algorithm, done with an explicit stack so a big graph
+     * can't overflow the call stack
+     *
+     * @return The component number of every node
+     */
+    private int[] findStronglyConnectedComponents()
+    {
+        int nodeCount = nodeSites.size();
+        int[] index = new int[nodeCount];
+        int[] lowLink = new int[nodeCount];
+        int[] components = new int[nodeCount];
+        boolean[] onStack = new boolean[nodeCount];
+        Arrays.fill(index, -1);
+
+        int[] componentStack = new int[nodeCount];
+        int componentStackSize = 0;
+        // The "call stack": which node we're visiting and how far through its edges we are
+        int[] visitStack = new int[nodeCount];
+        int[] edgePositions = new int[nodeCount];
+        int nextIndex = 0;
+        int nextComponent = 0;
+
+        for ( int root=0; root<nodeCount; root++)
+        {
+            if ( index[root] >= 0)
+            {
+                continue;
+            }
+
+            int visitStackSize = 0;
+            visitStack[visitStackSize] = root;
+            edgePositions[visitStackSize] = 0;
+            visitStackSize++;
+            index[root] = lowLink[root] = nextIndex++;
+            componentStack[componentStackSize++] = root;
+            onStack[root] = true;
+
+            while ( visitStackSize > 0)
+            {
+                int node = visitStack[visitStackSize - 1];
+                List<Edge> nodeEdges = outgoingEdges.get(node);
+
+                if ( edgePositions[visitStackSize - 1] < nodeEdges.size())
+                {
+                    int next = nodeEdges.get(edgePositions[visitStackSize - 1]++).to;
+                    if ( index[next] < 0)
+                    {
+                        // Visit it
+                        index[next] = lowLink[next] = nextIndex++;
+                        componentStack[componentStackSize++] = next;
+                        onStack[next] = true;
+                        visitStack[visitStackSize] = next;
+                        edgePositions[visitStackSize] = 0;
+                        visitStackSize++;
+                    }
+                    else if ( onStack[next])
+                    {
+                        lowLink[node] = Math.min(lowLink[node], index[next]);
+                    }
+                    continue;
+                }
+
+                // Done with this node's edges
+                if ( lowLink[node] == index[node])
+                {
+                    int member;
+                    do
+                    {
+                        member = componentStack[--componentStackSize];
+                        onStack[member] = false;
+                        components[member] = nextComponent;
+                    } while ( member != node);
+                    nextComponent++;
+                }
+
+                visitStackSize--;
+                if ( visitStackSize > 0)
+                {
+                    int caller = visitStack[visitStackSize - 1];
+                    lowLink[caller] = Math.min(lowLink[caller], lowLink[node]);
+                }
+            }
+        }
+
+        return components;
+    }
+
+    /**
+     * Breadth-first search from the end of an edge back to its start, staying inside the edge's component
+     *
+     * @param edge Edge the cycle has to go through
+     * @param components Component number of every node
+     * @param reachedBy The edge each node was reached by in this search (null for where it started)
+     * @param searchReached The last search that reached each node (so nothing needs clearing between searches)
+     * @param toVisit Room for the queue of nodes, one per node
+     * @param search Number of this search (more than any before it)
+     * @return The edges of the cycle, starting with the given one
+     */
+    private List<Edge> findShortestCycle(Edge edge, int[] components, Edge[] reachedBy, int[] searchReached, int[] toVisit, int search)
+    {
+        int component = components[edge.from];
+        int head = 0;
+        int tail = 0;
+        toVisit[tail++] = edge.to;
+        reachedBy[edge.to] = null;
+        searchReached[edge.to] = search;
+
+        while ( head < tail && searchReached[edge.from] != search)
+        {
+            List<Edge> nodeEdges = outgoingEdges.get(toVisit[head++]);
+            for ( int i=0; i<nodeEdges.size(); i++)
+            {
+                Edge next = nodeEdges.get(i);
+                if ( components[next.to] == component && searchReached[next.to] != search)
+                {
+                    reachedBy[next.to] = next;
+                    searchReached[next.to] = search;
+                    toVisit[tail++] = next.to;
+                }
+            }
+        }
+
+        // Follow the path back from the start of our edge
+        List<Edge> cycle = new ArrayList<>();
+        for ( Edge step = reachedBy[edge.from]; step != null; step = reachedBy[step.from])
+        {
+            cycle.add(step);
+        }
+        cycle.add(edge);
+        Collections.reverse(cycle);
+        return cycle;
+    }
+
+    /**
+     * A cycle's nodes, rotated to start with the lowest one (so the same cycle found from different edges
+     * looks the same)
+     */
+    private static final class CycleKey {
+        private final int[] nodes;
+        private final int hash;
+
+        private CycleKey(List<Edge> cycle)
+        {
+            int lowest = 0;
+            for ( int i=1; i<cycle.size(); i++)
+            {
+                if ( cycle.get(i).from < cycle.get(lowest).from)
+                {
+                    lowest = i;
+                }
+            }
+
+            nodes = new int[cycle.size()];
+            for ( int i=0; i<nodes.length; i++)
+            {
+                nodes[i] = cycle.get((lowest + i) % nodes.length).from;
+            }
+            hash = Arrays.hashCode(nodes);
+        }
+
+        @Override
+        public boolean equals(Object other)
+        {
+            return other instanceof CycleKey && Arrays.equals(nodes, ((CycleKey) other).nodes);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return hash;
+        }
+    }
+}
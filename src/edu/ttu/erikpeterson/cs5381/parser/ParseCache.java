@@ -0,0 +1,260 @@
+package edu.ttu.erikpeterson.cs5381.parser;
+
+import edu.ttu.erikpeterson.cs5381.parser.block.BlockTreeCodec;
+import edu.ttu.erikpeterson.cs5381.parser.block.CodeBlock;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps parsed files on disk between runs, keyed by path and a hash of the file's contents. A file that
+ * hasn't changed comes back from the cache with its class variables, method variables and lock summaries,
+ * so it skips parsing and gets walked straight from its summaries. The calls in those summaries are looked
+ * up again every run, so a change in one file still reaches the files that call into it.
+ *
+ * Typical use: parse with {@link #parsePath}, walk the blocks, then {@link #save} (so the summaries worked
+ * out by the walk are kept too).
+ */
+public class ParseCache {
+
+    private static final int MAGIC = 0x4C4B4331;
+    // Layout of the cache file; what's in it also depends on CodeBlockParser.PARSER_VERSION
+    private static final int VERSION = 3;
+
+    private static final class CachedFile {
+        private final long hash;
+        private final byte[] blocks;
+
+        private CachedFile(long hash, byte[] blocks)
+        {
+            this.hash = hash;
+            this.blocks = blocks;
+        }
+    }
+
+    private static final class ParsedFile {
+        private final long hash;
+        private final List<CodeBlock> blocks;
+
+        private ParsedFile(long hash, List<CodeBlock> blocks)
+        {
+            this.hash = hash;
+            this.blocks = blocks;
+        }
+    }
+
+    private final File cacheFile;
+    private final Map<String, CachedFile> cachedFiles = new HashMap<>();
+    private final Map<String, ParsedFile> parsedFiles = new LinkedHashMap<>();
+    private int filesParsed;
+    private int filesReused;
+
+    /**
+     * Constructor. Loads the cache file if there is one; if it can't be read, we quietly start from scratch.
+     *
+     * @param cacheFile Where the cache lives
+     */
+    public ParseCache(File cacheFile)
+    {
+        this(cacheFile, null);
+    }
+
+    /**
+     * Constructor. Loads the cache file if there is one; if it can't be read, that's reported and we start
+     * from scratch.
+     *
+     * @param cacheFile Where the cache lives
+     * @param errorOutput Where to report a cache file that can't be read (null to not report it)
+     */
+    public ParseCache(File cacheFile, PrintStream errorOutput)
+    {
+        this.cacheFile = cacheFile;
+        if ( cacheFile.exists())
+        {
+            try
+            {
+                load();
+            }
+            catch ( IOException e)
+            {
+                if ( errorOutput != null)
+                {
+                    errorOutput.println("# ignoring unreadable parse cache " + cacheFile.getAbsolutePath() + ": " + e.getMessage());
+                }
+                cachedFiles.clear();
+            }
+        }
+    }
+
+    /**
+     * Parse every file under a path, taking unchanged files from the cache
+     *
+     * @param directory File or directory to parse
+     * @return The blocks in all files found, the same as {@link CodeBlockParser#parsePath(File)} would give
+     */
+    public List<CodeBlock> parsePath(File directory) throws FileNotFoundException, BlockParsingException
+    {
+        if ( !directory.exists())
+        {
+            throw new FileNotFoundException("Directory " + directory.getAbsolutePath() + " can't be found!");
+        }
+
+        List<File> files = new ArrayList<>();
+        CodeBlockParser.findFiles(directory, files);
+
+        List<CodeBlock> codeBlocks = new ArrayList<>();
+        for ( File file : files)
+        {
+            codeBlocks.addAll(parse(file));
+        }
+        return codeBlocks;
+    }
+
+    /**
+     * Parse a file, or take it from the cache if it hasn't changed
+     *
+     * @param file File to parse
+     * @return The blocks in this file
+     */
+    public List<CodeBlock> parse(File file) throws FileNotFoundException, BlockParsingException
+    {
+        String path = file.getAbsolutePath();
+        String contents = SourceFileReader.read(file);
+        long hash = hash(contents);
+
+        List<CodeBlock> blocks = null;
+        CachedFile cachedFile = cachedFiles.get(path);
+        if ( cachedFile != null && cachedFile.hash == hash)
+        {
+            try
+            {
+                blocks = BlockTreeCodec.read(new DataInputStream(new ByteArrayInputStream(cachedFile.blocks)));
+                filesReused++;
+            }
+            catch ( IOException e)
+            {
+                // Just parse it again
+                blocks = null;
+            }
+        }
+
+        if ( blocks == null)
+        {
+            blocks = CodeBlockParser.parseContents(contents);
+            filesParsed++;
+        }
+
+        parsedFiles.put(path, new ParsedFile(hash, blocks));
+        return blocks;
+    }
+
+    /**
+     * Write out every file parsed (or reused) since this cache was loaded. Files that weren't asked for
+     * are dropped from the cache.
+     */
+    public void save() throws IOException
+    {
+        File parent = cacheFile.getAbsoluteFile().getParentFile();
+        File tempFile = File.createTempFile(cacheFile.getName(), ".tmp", parent);
+        try
+        {
+            try ( DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile))))
+            {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(CodeBlockParser.PARSER_VERSION);
+                out.writeInt(parsedFiles.size());
+
+                ByteArrayOutputStream blockBytes = new ByteArrayOutputStream();
+                for ( Map.Entry<String, ParsedFile> parsedFile : parsedFiles.entrySet())
+                {
+                    blockBytes.reset();
+                    BlockTreeCodec.write(new DataOutputStream(blockBytes), parsedFile.getValue().blocks);
+
+                    out.writeUTF(parsedFile.getKey());
+                    out.writeLong(parsedFile.getValue().hash);
+                    out.writeInt(blockBytes.size());
+                    blockBytes.writeTo(out);
+                }
+            }
+
+            // Swap it in whole, so a crash part way through can't leave a broken cache behind
+            Files.move(tempFile.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        finally
+        {
+            tempFile.delete();
+        }
+    }
+
+    /**
+     * @return Number of files that had to be parsed
+     */
+    public int getFilesParsed()
+    {
+        return filesParsed;
+    }
+
+    /**
+     * @return Number of files taken from the cache
+     */
+    public int getFilesReused()
+    {
+        return filesReused;
+    }
+
+    private void load() throws IOException
+    {
+        try ( DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(cacheFile))))
+        {
+            if ( in.readInt() != MAGIC || in.readInt() != VERSION || in.readInt() != CodeBlockParser.PARSER_VERSION)
+            {
+                throw new IOException("not a parse cache, or from a different version");
+            }
+
+            int fileCount = in.readInt();
+            for ( int i=0; i<fileCount; i++)
+            {
+                String path = in.readUTF();
+                long hash = in.readLong();
+                byte[] blocks = new byte[in.readInt()];
+                in.readFully(blocks);
+                cachedFiles.put(path, new CachedFile(hash, blocks));
+            }
+        }
+    }
+
+    /**
+     * 64-bit FNV-1a hash of a file's contents
+     */
+    static long hash(String contents)
+    {
+        long hash = 0xcbf29ce484222325L;
+        for ( int i=0; i<contents.length(); i++)
+        {
+            char current = contents.charAt(i);
+            hash ^= current & 0xFF;
+            hash *= 0x100000001b3L;
+            hash ^= current >>> 8;
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+}
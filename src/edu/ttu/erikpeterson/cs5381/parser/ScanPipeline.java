@@ -0,0 +1,339 @@
+package edu.ttu.erikpeterson.cs5381.parser;
+
+import edu.ttu.erikpeterson.cs5381.parser.block.CodeBlock;
+import edu.ttu.erikpeterson.cs5381.parser.block.MethodBlock;
+import edu.ttu.erikpeterson.cs5381.parser.block.SymbolIndex;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Reads and parses files in stages that run at the same time, so waiting on the disk overlaps with parsing:
+ *
+ *   files -> readers (load the text) -> [bounded queue] -> parsers (build the blocks, and work out each
+ *   method's lock summary) -> [bounded queue] -> indexer (puts the classes back in file order)
+ *
+ * Working out lock summaries is most of the cost of a walk, and a summary only needs the method's own file,
+ * so it's done here as soon as the file is parsed. Calls in the summaries are looked up again (cheaply)
+ * once every class is in, since a call can go to a class in any file; that's why the walk itself still
+ * waits for the pipeline to finish.
+ *
+ * Usage: {@link #start()}, {@link #addFile} for every file (files can be added while earlier ones are
+ * already being read), then {@link #finish()} for the blocks.
+ */
+public class ScanPipeline {
+
+    /**
+     * A file on its way through the pipeline
+     */
+    private static final class Item {
+        private final int sequence;
+        private final File file;
+        private String contents;
+        private List<CodeBlock> blocks;
+        private Exception failure;
+
+        private Item(int sequence, File file)
+        {
+            this.sequence = sequence;
+            this.file = file;
+        }
+    }
+
+    // Tells the next stage there's nothing more coming
+    private static final Item END = new Item(-1, null);
+
+    private final int numReaders;
+    private final int numParsers;
+    private final BlockingQueue<Item> fileQueue = new LinkedBlockingQueue<>();
+    private final BlockingQueue<Item> readQueue;
+    private final BlockingQueue<Item> parsedQueue;
+    private final AtomicInteger readersLeft;
+    private final AtomicInteger parsersLeft;
+
+    private ExecutorService threadPool;
+    private Future<List<Item>> indexed;
+    private int filesAdded;
+    private int filesSkipped;
+    private PrintStream errorOutput;
+    private boolean lazyBodies;
+
+    /**
+     * Constructor
+     *
+     * @param numReaders Threads reading files
+     * @param numParsers Threads parsing them
+     * @param queueCapacity How many files can wait between stages (bounds how much text is held at once)
+     */
+    public ScanPipeline(int numReaders, int numParsers, int queueCapacity)
+    {
+        if ( numReaders < 1 || numParsers < 1 || queueCapacity < 1)
+        {
+            throw new IllegalArgumentException("Need at least one reader, one parser and room for one file");
+        }
+        this.numReaders = numReaders;
+        this.numParsers = numParsers;
+        readQueue = new ArrayBlockingQueue<>(queueCapacity);
+        parsedQueue = new ArrayBlockingQueue<>(queueCapacity);
+        readersLeft = new AtomicInteger(numReaders);
+        parsersLeft = new AtomicInteger(numParsers);
+    }
+
+    /**
+     * Report files that can't be read or parsed here and carry on without them, instead of failing
+     * {@link #finish()}. Call before {@link #start()}.
+     *
+     * @param errorOutput Where to report them
+     */
+    public void setErrorOutput(PrintStream errorOutput)
+    {
+        this.errorOutput = errorOutput;
+    }
+
+    /**
+     * @return How many files {@link #finish()} reported and left out (only ever more than 0 with
+     *         {@link #setErrorOutput})
+     */
+    public int getFilesSkipped()
+    {
+        return filesSkipped;
+    }
+
+    /**
+     * Leave method bodies for later where we can (see {@link CodeBlockParser#parsePath(File, int, boolean)}).
+     * Lock summaries aren't worked out up front then, since that would mean building every body anyway.
+     * Call before {@link #start()}.
+     *
+     * @param lazyBodies True to leave method bodies for later
+     */
+    public void setLazyBodies(boolean lazyBodies)
+    {
+        this.lazyBodies = lazyBodies;
+    }
+
+    /**
+     * Start every stage's threads
+     */
+    public void start()
+    {
+        if ( threadPool != null)
+        {
+            throw new IllegalStateException("Pipeline already started");
+        }
+
+        threadPool = Executors.newFixedThreadPool(numReaders + numParsers + 1);
+        for ( int i=0; i<numReaders; i++)
+        {
+            threadPool.submit(this::read);
+        }
+        for ( int i=0; i<numParsers; i++)
+        {
+            threadPool.submit(this::parse);
+        }
+        indexed = threadPool.submit(this::index);
+    }
+
+    /**
+     * Send a file down the pipeline. Never blocks.
+     *
+     * @param file File to parse
+     */
+    public void addFile(File file)
+    {
+        if ( threadPool == null)
+        {
+            throw new IllegalStateException("Pipeline not started");
+        }
+        fileQueue.add(new Item(filesAdded++, file));
+    }
+
+    /**
+     * Wait for every file to make it through
+     *
+     * @return The blocks in all the files, in the order the files were added
+     */
+    public List<CodeBlock> finish() throws FileNotFoundException, BlockParsingException
+    {
+        if ( threadPool == null)
+        {
+            throw new IllegalStateException("Pipeline not started");
+        }
+
+        try
+        {
+            for ( int i=0; i<numReaders; i++)
+            {
+                fileQueue.add(END);
+            }
+
+            List<Item> items = indexed.get();
+            List<CodeBlock> codeBlocks = new ArrayList<>();
+            for ( Item item : items)
+            {
+                if ( item.failure == null)
+                {
+                    codeBlocks.addAll(item.blocks);
+                }
+                else if ( errorOutput != null)
+                {
+                    errorOutput.println("# unable to parse " + item.file + ": " + item.failure.getMessage());
+                    filesSkipped++;
+                }
+                else if ( item.failure instanceof FileNotFoundException)
+                {
+                    throw (FileNotFoundException) item.failure;
+                }
+                else if ( item.failure instanceof BlockParsingException)
+                {
+                    throw (BlockParsingException) item.failure;
+                }
+                else
+                {
+                    throw new IllegalStateException("Unable to parse " + item.file.getAbsolutePath(), item.failure);
+                }
+            }
+            return codeBlocks;
+        }
+        catch ( InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new BlockParsingException("Interrupted while parsing");
+        }
+        catch ( ExecutionException e)
+        {
+            throw new IllegalStateException("Parse pipeline failed", e.getCause());
+        }
+        finally
+        {
+            threadPool.shutdownNow();
+        }
+    }
+
+    private Void read() throws InterruptedException
+    {
+        try
+        {
+            Item item;
+            while ( (item = fileQueue.take()) != END)
+            {
+                try
+                {
+                    item.contents = SourceFileReader.read(item.file);
+                }
+                catch ( Exception e)
+                {
+                    item.failure = e;
+                }
+                readQueue.put(item);
+            }
+        }
+        finally
+        {
+            // The last reader out tells every parser
+            if ( readersLeft.decrementAndGet() == 0)
+            {
+                for ( int i=0; i<numParsers; i++)
+                {
+                    readQueue.put(END);
+                }
+            }
+        }
+        return null;
+    }
+
+    private Void parse() throws InterruptedException
+    {
+        try
+        {
+            Item item;
+            while ( (item = readQueue.take()) != END)
+            {
+                if ( item.failure == null)
+                {
+                    try
+                    {
+                        item.blocks = CodeBlockParser.parseContents(item.contents, lazyBodies);
+                        if ( !lazyBodies)
+                        {
+                            summarize(item.blocks);
+                        }
+                    }
+                    catch ( Exception e)
+                    {
+                        item.failure = e;
+                    }
+                    // Don't hold on to the text any longer than we have to
+                    item.contents = null;
+                }
+                parsedQueue.put(item);
+            }
+        }
+        finally
+        {
+            if ( parsersLeft.decrementAndGet() == 0)
+            {
+                parsedQueue.put(END);
+            }
+        }
+        return null;
+    }
+
+    private List<Item> index() throws InterruptedException
+    {
+        // Files finish in any order; put them back in the order they were added
+        List<Item> items = new ArrayList<>();
+        Item item;
+        while ( (item = parsedQueue.take()) != END)
+        {
+            while ( items.size() <= item.sequence)
+            {
+                items.add(null);
+            }
+            items.set(item.sequence, item);
+        }
+        return items;
+    }
+
+    /**
+     * Work out the lock summary of every method in a file, looking up calls within that file only
+     */
+    private static void summarize(List<CodeBlock> codeBlocks)
+    {
+        SymbolIndex fileIndex = new SymbolIndex(codeBlocks);
+        for ( CodeBlock codeBlock : codeBlocks)
+        {
+            summarize(codeBlock, fileIndex);
+        }
+    }
+
+    private static void summarize(CodeBlock codeBlock, SymbolIndex fileIndex)
+    {
+        if ( codeBlock instanceof MethodBlock)
+        {
+            try
+            {
+                ((MethodBlock) codeBlock).getLockSummary(fileIndex);
+            }
+            catch ( RuntimeException e)
+            {
+                // Leave it for the walk, which will run into the same problem (and report it) only if the
+                // method is actually reached
+            }
+        }
+        for ( CodeBlock subCodeBlock : codeBlock.getSubCodeBlocks())
+        {
+            summarize(subCodeBlock, fileIndex);
+        }
+    }
+}
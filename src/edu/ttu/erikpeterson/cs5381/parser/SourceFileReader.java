@@ -0,0 +1,104 @@
+package edu.ttu.erikpeterson.cs5381.parser;
+
+import edu.ttu.erikpeterson.cs5381.instrumentation.Instrumentation;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads a source file into a String. Small files are read in one go; big ones are memory-mapped
+ * so the bytes don't have to be copied onto the heap before they're decoded.
+ */
+public class SourceFileReader {
+
+    /**
+     * Files at least this big are memory-mapped instead of read into a byte array
+     */
+    public static final long MAPPED_READ_THRESHOLD = 1024 * 1024;
+
+    /**
+     * Read a file as UTF-8
+     *
+     * @param file File to read
+     * @return The file's contents
+     */
+    public static String read(File file) throws FileNotFoundException
+    {
+        return read(file, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Read a file. Every handle opened here is closed before returning.
+     *
+     * @param file File to read
+     * @param charset Encoding of the file (malformed input is replaced, not rejected)
+     * @return The file's contents
+     */
+    public static String read(File file, Charset charset) throws FileNotFoundException
+    {
+        long start = Instrumentation.start();
+        String contents = readContents(file, charset);
+        Instrumentation.stop(Instrumentation.Phase.READ_FILES, start);
+        if ( Instrumentation.isEnabled())
+        {
+            Instrumentation.count(Instrumentation.Counter.FILES_READ, 1);
+            Instrumentation.count(Instrumentation.Counter.BYTES_READ, file.length());
+        }
+        return contents;
+    }
+
+    private static String readContents(File file, Charset charset) throws FileNotFoundException
+    {
+        Path path = file.toPath();
+        try
+        {
+            if ( Files.size(path) < MAPPED_READ_THRESHOLD)
+            {
+                return new String(Files.readAllBytes(path), charset);
+            }
+
+            try ( FileChannel channel = FileChannel.open(path, StandardOpenOption.READ))
+            {
+                if ( channel.size() > Integer.MAX_VALUE)
+                {
+                    throw new FileNotFoundException(file.getAbsolutePath() + " is too big to parse");
+                }
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                return decode(buffer, charset);
+            }
+        }
+        catch ( NoSuchFileException e)
+        {
+            throw new FileNotFoundException("File " + file.getAbsolutePath() + " can't be found!");
+        }
+        catch ( FileNotFoundException e)
+        {
+            throw e;
+        }
+        catch ( IOException e)
+        {
+            throw new FileNotFoundException("Unable to read " + file.getAbsolutePath() + ": " + e.getMessage());
+        }
+    }
+
+    private static String decode(MappedByteBuffer buffer, Charset charset) throws CharacterCodingException
+    {
+        CharBuffer chars = charset.newDecoder()
+                                  .onMalformedInput(CodingErrorAction.REPLACE)
+                                  .onUnmappableCharacter(CodingErrorAction.REPLACE)
+                                  .decode(buffer);
+        return chars.toString();
+    }
+}
@@ -0,0 +1,362 @@
+package edu.ttu.erikpeterson.cs5381.parser.block;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes one file's blocks in a compact binary form and reads them back. Along with the block tree, this keeps
+ * whatever has been worked out about the blocks so far: class variables, method variables and lock summaries.
+ *
+ * The format is the file contents, then each block (in the order they start) as its type, parent and positions,
+ * then what's known about the classes and methods. Numbers are variable-length and every string after the
+ * contents is written once per file, then referred to by number.
+ */
+public final class BlockTreeCodec {
+
+    private static final int NONE = 0;
+
+    private BlockTreeCodec()
+    {
+    }
+
+    /**
+     * Write out a file's blocks
+     *
+     * @param out Where to write
+     * @param fileClasses The file's classes, as returned by the parser
+     */
+    public static void write(DataOutputStream out, List<CodeBlock> fileClasses) throws IOException
+    {
+        List<CodeBlock> allBlocks = new ArrayList<>();
+        for ( CodeBlock codeBlock : fileClasses)
+        {
+            if ( codeBlock.getParent() == null)
+            {
+                addBlocks(codeBlock, allBlocks);
+            }
+        }
+
+        byte[] contents = allBlocks.isEmpty() ? new byte[0] : allBlocks.get(0).fileContents.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(out, contents.length);
+        out.write(contents);
+
+        Map<CodeBlock, Integer> blockNumbers = new IdentityHashMap<>();
+        StringTable strings = new StringTable();
+        writeVarInt(out, allBlocks.size());
+        for ( CodeBlock codeBlock : allBlocks)
+        {
+            blockNumbers.put(codeBlock, blockNumbers.size());
+            writeVarInt(out, codeBlock.blockType.ordinal());
+            // Parents always come first, so they already have a number
+            writeVarInt(out, codeBlock.parent == null ? NONE : blockNumbers.get(codeBlock.parent) + 1);
+            writeVarInt(out, codeBlock.startPosition);
+            writeVarInt(out, codeBlock.openBracePosition - codeBlock.startPosition);
+            writeVarInt(out, codeBlock.endPosition - codeBlock.openBracePosition);
+            strings.write(out, codeBlock.name);
+        }
+
+        for ( CodeBlock codeBlock : allBlocks)
+        {
+            if ( codeBlock instanceof ClassBlock)
+            {
+                writeVariables(out, strings, ((ClassBlock) codeBlock).getFoundClassVariables());
+            }
+            else if ( codeBlock instanceof MethodBlock)
+            {
+                MethodBlock methodBlock = (MethodBlock) codeBlock;
+                writeVariables(out, strings, methodBlock.getFoundVariables());
+                writeLockSummary(out, strings, methodBlock.getFoundLockSummary());
+            }
+        }
+    }
+
+    /**
+     * Read back a file's blocks
+     *
+     * @param in Where to read from
+     * @return The file's classes, just as the parser would return them
+     */
+    public static List<CodeBlock> read(DataInputStream in) throws IOException
+    {
+        byte[] contentBytes = new byte[readVarInt(in)];
+        in.readFully(contentBytes);
+        String fileContents = new String(contentBytes, StandardCharsets.UTF_8);
+
+        CodeBlockType[] blockTypes = CodeBlockType.values();
+        List<String> strings = new ArrayList<>();
+        int blockCount = readVarInt(in);
+        if ( blockCount > fileContents.length())
+        {
+            // Every block has a '{' of its own
+            throw new IOException("Bad block count in cached file");
+        }
+        CodeBlock[] allBlocks = new CodeBlock[blockCount];
+        List<CodeBlock> classes = new ArrayList<>();
+
+        for ( int block=0; block<blockCount; block++)
+        {
+            int blockType = readVarInt(in);
+            int parent = readVarInt(in) - 1;
+            int startPosition = readVarInt(in);
+            int openBracePosition = startPosition + readVarInt(in);
+            int endPosition = openBracePosition + readVarInt(in);
+            String name = readString(in, strings);
+
+            // The offsets can overflow on a damaged file, so check the positions are in order too
+            if ( blockType >= blockTypes.length || parent >= block ||
+                 openBracePosition < startPosition || endPosition < openBracePosition || endPosition > fileContents.length())
+            {
+                throw new IOException("Bad block " + block + " in cached file");
+            }
+
+            CodeBlock codeBlock = CodeBlockFactory.BuildBlock(blockTypes[blockType], fileContents,
+                                                              startPosition, openBracePosition, endPosition);
+            codeBlock.setName(name);
+            if ( parent >= 0)
+            {
+                allBlocks[parent].addCodeBlock(codeBlock);
+                codeBlock.setParent(allBlocks[parent]);
+            }
+            if ( codeBlock.blockType == CodeBlockType.CLASS)
+            {
+                classes.add(codeBlock);
+            }
+            allBlocks[block] = codeBlock;
+        }
+
+        // The whole tree has to be there before lock summaries can be rebuilt (they need each method's class)
+        for ( CodeBlock codeBlock : allBlocks)
+        {
+            if ( codeBlock instanceof ClassBlock)
+            {
+                Map<String, String> classVariables = readVariables(in, strings);
+                if ( classVariables != null)
+                {
+                    ((ClassBlock) codeBlock).restoreClassVariables(classVariables);
+                }
+            }
+            else if ( codeBlock instanceof MethodBlock)
+            {
+                MethodBlock methodBlock = (MethodBlock) codeBlock;
+                Map<String, String> variables = readVariables(in, strings);
+                methodBlock.restore(variables, readLockSummary(in, strings, methodBlock));
+            }
+        }
+
+        return classes;
+    }
+
+    private static void addBlocks(CodeBlock codeBlock, List<CodeBlock> allBlocks)
+    {
+        // The whole tree gets stored, so anything left for later has to be built now
+        if ( codeBlock instanceof MethodBlock)
+        {
+            ((MethodBlock) codeBlock).parseBody();
+        }
+        allBlocks.add(codeBlock);
+        for ( CodeBlock subCodeBlock : codeBlock.subCodeBlocks)
+        {
+            addBlocks(subCodeBlock, allBlocks);
+        }
+    }
+
+    private static void writeVariables(DataOutputStream out, StringTable strings, Map<String, String> variables) throws IOException
+    {
+        if ( variables == null)
+        {
+            writeVarInt(out, NONE);
+            return;
+        }
+
+        writeVarInt(out, variables.size() + 1);
+        for ( Map.Entry<String, String> variable : variables.entrySet())
+        {
+            strings.write(out, variable.getKey());
+            strings.write(out, variable.getValue());
+        }
+    }
+
+    private static Map<String, String> readVariables(DataInputStream in, List<String> strings) throws IOException
+    {
+        int count = readVarInt(in) - 1;
+        if ( count < 0)
+        {
+            return null;
+        }
+
+        Map<String, String> variables = new HashMap<>();
+        for ( int i=0; i<count; i++)
+        {
+            String variable = readString(in, strings);
+            variables.put(variable, readString(in, strings));
+        }
+        return variables;
+    }
+
+    private static void writeLockSummary(DataOutputStream out, StringTable strings, LockSummary summary) throws IOException
+    {
+        if ( summary == null)
+        {
+            writeVarInt(out, NONE);
+            return;
+        }
+
+        List<LockSummary.Entry> steps = summary.getSteps();
+        writeVarInt(out, steps.size() + 1);
+        for ( LockSummary.Entry step : steps)
+        {
+            if ( step.isCall())
+            {
+                MethodReference reference = step.getReference();
+                out.writeByte(0);
+                strings.write(out, reference.getClassName());
+                strings.write(out, reference.getMethodName());
+                // Arity can be -1
+                MethodSignature signature = reference.getSignature();
+                writeVarInt(out, signature.getArity() + 1);
+                for ( int i=0; i<signature.getArity(); i++)
+                {
+                    strings.write(out, signature.getParameterType(i));
+                }
+            }
+            else
+            {
+                // Every lock in a summary was found in that summary's method, so that doesn't need saving
+                LockInfo lockInfo = step.getLockInfo();
+                out.writeByte(lockInfo.isLock() ? 1 : 2);
+                strings.write(out, lockInfo.getName());
+                strings.write(out, lockInfo.getType());
+            }
+        }
+    }
+
+    private static LockSummary readLockSummary(DataInputStream in, List<String> strings, MethodBlock methodBlock) throws IOException
+    {
+        int count = readVarInt(in) - 1;
+        if ( count < 0)
+        {
+            return null;
+        }
+
+        LockSummary summary = new LockSummary();
+        for ( int i=0; i<count; i++)
+        {
+            int kind = in.readByte();
+            if ( kind < 0 || kind > 2)
+            {
+                throw new IOException("Bad lock summary step in cached file");
+            }
+            String first = readString(in, strings);
+            String second = readString(in, strings);
+            if ( kind == 0)
+            {
+                int arity = readVarInt(in) - 1;
+                if ( arity > 255)
+                {
+                    // More parameters than Java allows
+                    throw new IOException("Bad call in cached file");
+                }
+                String[] argumentTypes = arity < 0 ? null : new String[arity];
+                for ( int argument=0; argument<arity; argument++)
+                {
+                    argumentTypes[argument] = readString(in, strings);
+                }
+                // Looked up when the summary is first used
+                summary.addCall(new MethodReference(first, new MethodSignature(second, argumentTypes)), Collections.emptyList());
+            }
+            else
+            {
+                summary.addLockInfo(new LockInfo(first, second, methodBlock, kind == 1));
+            }
+        }
+        return summary;
+    }
+
+    private static void writeVarInt(DataOutputStream out, int value) throws IOException
+    {
+        while ( (value & ~0x7F) != 0)
+        {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static int readVarInt(DataInputStream in) throws IOException
+    {
+        int value = 0;
+        for ( int shift=0; shift<35; shift+=7)
+        {
+            int current = in.readUnsignedByte();
+            value |= (current & 0x7F) << shift;
+            if ( (current & 0x80) == 0)
+            {
+                // Only non-negative numbers are ever written; the fifth byte can carry a sign bit in a damaged file
+                if ( value < 0)
+                {
+                    break;
+                }
+                return value;
+            }
+        }
+        throw new IOException("Bad number in cached file");
+    }
+
+    /**
+     * Strings are written as a number: 0 for null, the string's position + 1 if it's been written before, or the
+     * next position + 1 followed by the string itself the first time
+     */
+    private static final class StringTable {
+        private final Map<String, Integer> numbers = new HashMap<>();
+
+        void write(DataOutputStream out, String string) throws IOException
+        {
+            if ( string == null)
+            {
+                writeVarInt(out, NONE);
+                return;
+            }
+
+            Integer number = numbers.get(string);
+            if ( number != null)
+            {
+                writeVarInt(out, number + 1);
+                return;
+            }
+
+            number = numbers.size();
+            numbers.put(string, number);
+            writeVarInt(out, number + 1);
+            out.writeUTF(string);
+        }
+    }
+
+    private static String readString(DataInputStream in, List<String> strings) throws IOException
+    {
+        int number = readVarInt(in) - 1;
+        if ( number < 0)
+        {
+            return null;
+        }
+        if ( number < strings.size())
+        {
+            return strings.get(number);
+        }
+        if ( number != strings.size())
+        {
+            throw new IOException("Bad string in cached file");
+        }
+
+        String string = in.readUTF();
+        strings.add(string);
+        return string;
+    }
+}
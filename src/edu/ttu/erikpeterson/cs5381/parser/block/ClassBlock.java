@@ -1,51 +1,146 @@
 package edu.ttu.erikpeterson.cs5381.parser.block;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 public class ClassBlock extends CodeBlock {
 
+    private static final Pattern HEADER_WORD = Pattern.compile("[\\w\\.]+");
     private static final Pattern VARIABLE_DECLARE_PATTERN = Pattern.compile("^(private|protected|public)?\\s*(static)?\\s*(final)?\\s+([\\w\\[\\]]+)\\s+(\\w+)(\\s*=)?[\\s\\w\\(\\)\\[\\]]*$");
 
     private Map<String, String> classVariables;
+    private Map<String, MethodBlock> methodsByName;
+    // Overloads, grouped by name and number of parameters (see MethodSignature.getShape())
+    private Map<MethodSignature, List<MethodBlock>> methodsByShape;
+    private List<String> superTypes;
+    private boolean isInterface;
 
     /**
      * Constructor. Block type is assumed
-     * @param blockInfo Block information
-     * @param contents Block contents
      * @param fileContents Full contents of the file
      * @param startPosition Start of this block in the file (including block info)
+     * @param openBracePosition Position of the '{' that opens this block
      * @param endPosition End of this block in the file
      */
-    ClassBlock(String blockInfo,
-               String contents,
-               String fileContents,
+    ClassBlock(String fileContents,
                int startPosition,
+               int openBracePosition,
                int endPosition) {
-        super(blockInfo, CodeBlockType.CLASS, contents, fileContents, startPosition, endPosition);
+        super(CodeBlockType.CLASS, fileContents, startPosition, openBracePosition, endPosition);
     }
 
     /**
      * Finds a method with the given name
      *
      * @param methodName Method name to find
-     * @return Method code block with that name, or null otherwise
+     * @return Method code block with that name (the first one, if it's overloaded), or null otherwise
      */
-    public MethodBlock getMethodBlock(String methodName)
+    public synchronized MethodBlock getMethodBlock(String methodName)
     {
+        if ( methodsByName == null)
+        {
+            findMethods();
+        }
+
+        return methodsByName.get(methodName);
+    }
+
+    /**
+     * Finds the method a call goes to. Among overloads with the right number of parameters, the first one
+     * whose parameter types fit the argument types we know wins.
+     *
+     * @param call The call's signature
+     * @return The method (the first one with the right number of parameters, or else the first one with the
+     *         call's name, if no overload fits), or null if there isn't one
+     */
+    public synchronized MethodBlock getMethodBlock(MethodSignature call)
+    {
+        MethodBlock overload = getOverload(call);
+        if ( overload != null)
+        {
+            return overload;
+        }
+
+        // Nothing fits the types we know, so settle for the first overload with the right number of parameters
+        List<MethodBlock> overloads = call.getArity() < 0 ? null : methodsByShape.get(call.getShape());
+        return overloads != null ? overloads.get(0) : getMethodBlock(call.getName());
+    }
+
+    /**
+     * Finds the overload a call goes to, only among methods with the right number of parameters. This is what
+     * counts as an override (or an inherited method): execute(int) is a different method from execute().
+     *
+     * @param call The call's signature
+     * @return The method, or null if there isn't one (or we don't know how many arguments the call has, or none
+     *         of the overloads takes the argument types we know)
+     */
+    public synchronized MethodBlock getOverload(MethodSignature call)
+    {
+        if ( methodsByName == null)
+        {
+            findMethods();
+        }
+
+        List<MethodBlock> overloads = call.getArity() < 0 ? null : methodsByShape.get(call.getShape());
+        if ( overloads == null)
+        {
+            return null;
+        }
+        for ( MethodBlock overload : overloads)
+        {
+            if ( overload.getSignature().accepts(call))
+            {
+                return overload;
+            }
+        }
+        return null;
+    }
+
+    private void findMethods()
+    {
+        methodsByName = new HashMap<>();
+        methodsByShape = new HashMap<>();
         for ( CodeBlock subCodeBlock : subCodeBlocks)
         {
-            // TODO: Assuming no space between the method name and open parentheses
-            if ( subCodeBlock instanceof MethodBlock &&
-                 subCodeBlock.getBlockInfo().contains(" " + methodName + "("))
+            if ( subCodeBlock instanceof MethodBlock && subCodeBlock.getName() != null)
             {
-                return (MethodBlock) subCodeBlock;
+                MethodBlock methodBlock = (MethodBlock) subCodeBlock;
+                methodsByName.putIfAbsent(methodBlock.getName(), methodBlock);
+                methodsByShape.computeIfAbsent(methodBlock.getSignature().getShape(), key -> new ArrayList<>()).add(methodBlock);
             }
         }
+    }
 
-        return null;
+    /**
+     * @return True if this is an interface rather than a class
+     */
+    public synchronized boolean isInterface()
+    {
+        if ( superTypes == null)
+        {
+            findSuperTypes();
+        }
+        return isInterface;
+    }
+
+    /**
+     * The classes and interfaces this one extends or implements, as written (without any package or
+     * type arguments), e.g. [Base, Runnable] for "class Worker extends Base implements Runnable"
+     *
+     * @return The supertype names, in the order they're declared
+     */
+    public synchronized List<String> getSuperTypeNames()
+    {
+        if ( superTypes == null)
+        {
+            findSuperTypes();
+        }
+        return superTypes;
     }
 
     /**
@@ -53,7 +148,7 @@ public class ClassBlock extends CodeBlock {
      *
      * @return Map of class variable names to their type
      */
-    public Map<String, String> getClassVariables()
+    public synchronized Map<String, String> getClassVariables()
     {
         if ( classVariables == null)
         {
@@ -62,15 +157,94 @@ public class ClassBlock extends CodeBlock {
         return classVariables;
     }
 
+    /**
+     * @return The class variables, or null if they haven't been found yet
+     */
+    synchronized Map<String, String> getFoundClassVariables()
+    {
+        return classVariables;
+    }
+
+    /**
+     * Use class variables found earlier (e.g. in a cached copy of this file) instead of finding them again
+     *
+     * @param classVariables Map of class variable names to their type
+     */
+    synchronized void restoreClassVariables(Map<String, String> classVariables)
+    {
+        this.classVariables = classVariables;
+    }
+
+    private void findSuperTypes()
+    {
+        List<String> found = new ArrayList<>();
+        Matcher word = HEADER_WORD.matcher(removeTypeArguments(getBlockInfoView()));
+        boolean inSuperTypes = false;
+        while ( word.find())
+        {
+            String current = word.group();
+            if ( current.equals("interface"))
+            {
+                isInterface = true;
+            }
+            else if ( current.equals("extends") || current.equals("implements"))
+            {
+                inSuperTypes = true;
+            }
+            else if ( current.equals("permits"))
+            {
+                inSuperTypes = false;
+            }
+            else if ( inSuperTypes)
+            {
+                // Classes are looked up by their simple name
+                found.add(current.substring(current.lastIndexOf('.') + 1));
+            }
+        }
+        superTypes = Collections.unmodifiableList(found);
+    }
+
+    /**
+     * @return The text with everything inside <...> taken out (so "extends" in a type bound doesn't count)
+     */
+    private static String removeTypeArguments(CharSequence text)
+    {
+        StringBuilder builder = new StringBuilder(text.length());
+        int depth = 0;
+        for ( int i=0; i<text.length(); i++)
+        {
+            char current = text.charAt(i);
+            if ( current == '<')
+            {
+                depth++;
+            }
+            else if ( current == '>')
+            {
+                depth = Math.max(depth - 1, 0);
+            }
+            else if ( depth == 0)
+            {
+                builder.append(current);
+            }
+            else
+            {
+                // Keep words apart
+                builder.append(' ');
+            }
+        }
+        return builder.toString();
+    }
+
     private void findClassVariables()
     {
         classVariables = new HashMap<>();
 
-        int currentStartPosition = this.startPosition + this.blockInfo.length();
+        // Start just after our '{'
+        int currentStartPosition = this.openBracePosition + 1;
 
         for (CodeBlock subCodeBlock : subCodeBlocks)
         {
-            parseForClassVariables(fileContents.substring(currentStartPosition + 1, subCodeBlock.startPosition));
+            parseForClassVariables(fileContents.substring(currentStartPosition, subCodeBlock.startPosition));
             currentStartPosition = subCodeBlock.endPosition + 1;
         }
 
@@ -3,24 +3,18 @@ package edu.ttu.erikpeterson.cs5381.parser.block;
 import java.util.ArrayList;
 import java.util.List;
 
+/**
+ * A {...} block in a source file. Blocks don't keep copies of their text; they hold positions into the
+ * file contents, which every block in the file shares.
+ */
 public class CodeBlock {
 
-    /**
-     * The information right before this block
-     */
-    protected final String blockInfo;
-
     protected final CodeBlockType blockType;
 
     protected CodeBlock parent;
 
     protected String name;
 
-    /**
-     * Everything between '{' and '}'
-     */
-    protected final String contents;
-
     /**
      * The full file contents
      */
@@ -31,6 +25,11 @@ public class CodeBlock {
      */
     protected final int startPosition;
 
+    /**
+     * The position of the '{' that opens this block (the block info runs from the start position up to here)
+     */
+    protected final int openBracePosition;
+
     /**
      * The end position of this block in the file
      */
@@ -41,25 +40,22 @@ public class CodeBlock {
     /**
      * Constructor
      *
-     * @param blockInfo Block information
      * @param blockType Kind of block
-     * @param contents Block contents
      * @param fileContents Full file contents
      * @param startPosition Start of this block in the file (including block info)
+     * @param openBracePosition Position of the '{' that opens this block
      * @param endPosition End of this block in the file
      */
-    CodeBlock(String blockInfo,
-                     CodeBlockType blockType,
-                     String contents,
-                     String fileContents,
-                     int startPosition,
-                     int endPosition)
+    CodeBlock(CodeBlockType blockType,
+              String fileContents,
+              int startPosition,
+              int openBracePosition,
+              int endPosition)
     {
-        this.blockInfo = blockInfo;
         this.blockType = blockType;
-        this.contents = contents;
         this.fileContents = fileContents;
         this.startPosition = startPosition;
+        this.openBracePosition = openBracePosition;
         this.endPosition = endPosition;
     }
 
@@ -67,16 +63,40 @@ public class CodeBlock {
 
     public String getName() { return name; }
 
+    /**
+     * @return The information right before this block (copied out of the file)
+     */
     public String getBlockInfo() {
-        return blockInfo;
+        return fileContents.substring(startPosition, openBracePosition);
+    }
+
+    /**
+     * @return The information right before this block, without copying it
+     */
+    public SourceSlice getBlockInfoView() {
+        return new SourceSlice(fileContents, startPosition, openBracePosition);
     }
 
+    /**
+     * @return Everything between '{' and '}' (copied out of the file)
+     */
     public String getContents() {
-        return contents;
+        return fileContents.substring(openBracePosition + 1, endPosition);
+    }
+
+    /**
+     * @return Everything between '{' and '}', without copying it
+     */
+    public SourceSlice getContentsView() {
+        return new SourceSlice(fileContents, openBracePosition + 1, endPosition);
     }
 
+    public String getFileContents() { return fileContents; }
+
     public int getStartPosition() { return startPosition; }
 
+    public int getOpenBracePosition() { return openBracePosition; }
+
     public int getEndPosition() { return endPosition; }
 
     public CodeBlockType getBlockType() {
@@ -96,6 +116,15 @@ public class CodeBlock {
         this.subCodeBlocks.addAll(subCodeBlocks);
     }
 
+    /**
+     * Add a code block to the end of our list of sub-blocks
+     *
+     * @param subCodeBlock Block to add
+     */
+    public void addCodeBlock(CodeBlock subCodeBlock) {
+        this.subCodeBlocks.add(subCodeBlock);
+    }
+
     public boolean hasSubBlocks()
     {
         return !subCodeBlocks.isEmpty();
@@ -8,30 +8,28 @@ public class CodeBlockFactory {
     /**
      * Build the proper type of code block
      *
-     * @param blockInfo Block information
      * @param blockType Block type
-     * @param contents Block contents
      * @param fileContents Full file contents
      * @param startPosition Start position of this block (including block info)
+     * @param openBracePosition Position of the '{' that opens this block
      * @param endPosition End position of this block
      * @return The proper kind of CodeBlock
      */
-    public static CodeBlock BuildBlock(String blockInfo,
-                                       CodeBlockType blockType,
-                                       String contents,
+    public static CodeBlock BuildBlock(CodeBlockType blockType,
                                        String fileContents,
                                        int startPosition,
+                                       int openBracePosition,
                                        int endPosition)
     {
         switch ( blockType)
         {
             case CLASS:
-                return new ClassBlock(blockInfo, contents, fileContents, startPosition, endPosition);
+                return new ClassBlock(fileContents, startPosition, openBracePosition, endPosition);
             case METHOD:
             case THREAD_ENTRY:
-                return new MethodBlock(blockInfo, blockType, contents, fileContents, startPosition, endPosition);
+                return new MethodBlock(blockType, fileContents, startPosition, openBracePosition, endPosition);
             default:
-                return new CodeBlock(blockInfo, blockType, contents, fileContents, startPosition, endPosition);
+                return new CodeBlock(blockType, fileContents, startPosition, openBracePosition, endPosition);
         }
     }
 }
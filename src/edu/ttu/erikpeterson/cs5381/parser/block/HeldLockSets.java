@@ -0,0 +1,189 @@
+package edu.ttu.erikpeterson.cs5381.parser.block;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A thread's locks boiled down to the distinct sets of locks it held at the same time, in the order they
+ * were taken. Events are folded in as they're found, so a thread that takes the same locks over and over
+ * (say, in a loop, or through a method called from many places) costs no more than one that takes them once.
+ *
+ * Only a set of more than one lock is kept, since that's all the lock-order graph cares about. Two sets
+ * are the same if they hold the same locks in the same order; the first one seen is the one kept.
+ */
+public final class HeldLockSets {
+
+    private final IntArrayList heldLocks = new IntArrayList();
+    private final IntArrayList heldSites = new IntArrayList();
+
+    // Lock ids of each set we kept, for spotting repeats
+    private int[][] setsSeen = new int[16][];
+    private final List<int[]> lockIds = new ArrayList<>();
+    private final List<int[]> sites = new ArrayList<>();
+
+    private long eventCount;
+    private boolean finished;
+
+    /**
+     * Fold in the next lock or unlock
+     *
+     * @param event Packed lock event (see {@link LockSymbolTable})
+     */
+    public void add(long event)
+    {
+        if ( finished)
+        {
+            throw new IllegalStateException("Can't add lock events after finish()");
+        }
+        eventCount++;
+
+        int lockId = LockSymbolTable.lockId(event);
+        if ( LockSymbolTable.isLock(event))
+        {
+            heldLocks.add(lockId);
+            heldSites.add(LockSymbolTable.site(event));
+            return;
+        }
+
+        // Is an unlock. If there's more than one lock held, record the set before removing the lock
+        if ( heldLocks.size() > 1)
+        {
+            addHeldSet();
+        }
+        int position = heldLocks.indexOf(lockId);
+        if ( position >= 0)
+        {
+            heldLocks.removeAt(position);
+            heldSites.removeAt(position);
+        }
+    }
+
+    /**
+     * @param events Packed lock events, in order
+     */
+    public void addAll(LongArrayList events)
+    {
+        for ( int i=0; i<events.size(); i++)
+        {
+            add(events.get(i));
+        }
+    }
+
+    /**
+     * Note that the thread is done. Whatever is still held at this point counts as one more set.
+     */
+    public void finish()
+    {
+        if ( finished)
+        {
+            return;
+        }
+        if ( heldLocks.size() > 1)
+        {
+            addHeldSet();
+        }
+        finished = true;
+    }
+
+    /**
+     * @return How many distinct sets were kept
+     */
+    public int size()
+    {
+        return lockIds.size();
+    }
+
+    /**
+     * @param index Which set
+     * @return The ids of the locks in that set, in the order they were taken
+     */
+    public int[] getLockIds(int index)
+    {
+        return lockIds.get(index);
+    }
+
+    /**
+     * @param index Which set
+     * @return Where each lock in that set was taken (sites in the {@link LockSymbolTable})
+     */
+    public int[] getSites(int index)
+    {
+        return sites.get(index);
+    }
+
+    /**
+     * @return How many lock events were folded in (i.e. how long the trace would have been)
+     */
+    public long getEventCount()
+    {
+        return eventCount;
+    }
+
+    private void addHeldSet()
+    {
+        if ( (lockIds.size() + 1) * 2 > setsSeen.length)
+        {
+            growSetsSeen();
+        }
+
+        int mask = setsSeen.length - 1;
+        int slot = hash(heldLocks) & mask;
+        while ( setsSeen[slot] != null)
+        {
+            if ( matches(setsSeen[slot], heldLocks))
+            {
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        // Have to copy, since the held lists keep changing
+        int[] newLockIds = heldLocks.toArray();
+        setsSeen[slot] = newLockIds;
+        lockIds.add(newLockIds);
+        sites.add(heldSites.toArray());
+    }
+
+    private void growSetsSeen()
+    {
+        setsSeen = new int[setsSeen.length * 2][];
+        int mask = setsSeen.length - 1;
+        for ( int[] set : lockIds)
+        {
+            int slot = Arrays.hashCode(set) & mask;
+            while ( setsSeen[slot] != null)
+            {
+                slot = (slot + 1) & mask;
+            }
+            setsSeen[slot] = set;
+        }
+    }
+
+    private static int hash(IntArrayList locks)
+    {
+        // Same as Arrays.hashCode, so growSetsSeen() can use that
+        int hash = 1;
+        for ( int i=0; i<locks.size(); i++)
+        {
+            hash = 31 * hash + locks.get(i);
+        }
+        return hash;
+    }
+
+    private static boolean matches(int[] set, IntArrayList locks)
+    {
+        if ( set.length != locks.size())
+        {
+            return false;
+        }
+        for ( int i=0; i<set.length; i++)
+        {
+            if ( set[i] != locks.get(i))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,91 @@
+package edu.ttu.erikpeterson.cs5381.parser.block;
+
+import java.util.Arrays;
+
+/**
+ * A growable list of ints, without boxing each one
+ */
+public final class IntArrayList {
+
+    private int[] values;
+    private int size;
+
+    public IntArrayList()
+    {
+        this(16);
+    }
+
+    /**
+     * @param capacity How many values to make room for up front
+     */
+    public IntArrayList(int capacity)
+    {
+        values = new int[Math.max(capacity, 1)];
+    }
+
+    public void add(int value)
+    {
+        if ( size == values.length)
+        {
+            values = Arrays.copyOf(values, size * 2);
+        }
+        values[size++] = value;
+    }
+
+    public int get(int index)
+    {
+        if ( index >= size)
+        {
+            throw new IndexOutOfBoundsException("Index " + index + ", size " + size);
+        }
+        return values[index];
+    }
+
+    /**
+     * @return Position of the first matching value, or -1 if it isn't here
+     */
+    public int indexOf(int value)
+    {
+        for ( int i=0; i<size; i++)
+        {
+            if ( values[i] == value)
+            {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Remove the value at a position, moving everything after it down one
+     */
+    public void removeAt(int index)
+    {
+        if ( index >= size)
+        {
+            throw new IndexOutOfBoundsException("Index " + index + ", size " + size);
+        }
+        System.arraycopy(values, index + 1, values, index, size - index - 1);
+        size--;
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    public boolean isEmpty()
+    {
+        return size == 0;
+    }
+
+    public void clear()
+    {
+        size = 0;
+    }
+
+    public int[] toArray()
+    {
+        return Arrays.copyOf(values, size);
+    }
+}
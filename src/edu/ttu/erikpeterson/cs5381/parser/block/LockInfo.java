@@ -7,8 +7,9 @@ public class LockInfo {
     private final String name;
     private final String type;
 
-
-    private final String whereFound;
+    private final MethodBlock method;
+    // Worked out from the method the first time someone asks
+    private String whereFound;
     private final boolean lock;
 
     /**
@@ -23,7 +24,7 @@ public class LockInfo {
     {
         this.name = name;
         this.type = type;
-        this.whereFound = method.getClassAndName();
+        this.method = method;
         this.lock = lock;
     }
 
@@ -36,6 +37,7 @@ public class LockInfo {
     {
         this.name = other.name;
         this.type = other.type;
+        this.method = other.method;
         this.whereFound = other.whereFound;
         this.lock = lock;
     }
@@ -48,7 +50,14 @@ public class LockInfo {
         return type;
     }
 
-    public String getWhereFound() { return whereFound; }
+    public String getWhereFound()
+    {
+        if ( whereFound == null)
+        {
+            whereFound = method.getClassAndName();
+        }
+        return whereFound;
+    }
 
     public boolean isLock() {
         return lock;
@@ -80,7 +89,7 @@ public class LockInfo {
     @Override
     public String toString()
     {
-        String returnValue = "Variable " + name + " (" + type + ") found in " + whereFound;
+        String returnValue = "Variable " + name + " (" + type + ") found in " + getWhereFound();
         if ( !lock)
         {
             returnValue = returnValue + " (unlock)";
@@ -0,0 +1,164 @@
+package edu.ttu.erikpeterson.cs5381.parser.block;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * What a method does with locks: its own lock/unlock events and the calls it makes, in the order they happen.
+ * A method's summary is built once, so every caller can splice it in without reading the method again.
+ *
+ * Every call is kept as it was written (a {@link MethodReference}), including calls to methods we don't have,
+ * so the summary can be pointed at a new set of classes without going through the method's code again.
+ */
+public class LockSummary {
+
+    /**
+     * One step in a summary: either a lock/unlock or a call to another method
+     */
+    public static final class Entry {
+        private final LockInfo lockInfo;
+        private final MethodReference reference;
+        private final MethodBlock callee;
+
+        private Entry(LockInfo lockInfo, MethodReference reference, MethodBlock callee)
+        {
+            this.lockInfo = lockInfo;
+            this.reference = reference;
+            this.callee = callee;
+        }
+
+        public boolean isCall() { return reference != null; }
+
+        /**
+         * @return The lock or unlock, or null if this is a call
+         */
+        public LockInfo getLockInfo() { return lockInfo; }
+
+        /**
+         * @return The call as it was written, or null if this is a lock or unlock
+         */
+        public MethodReference getReference() { return reference; }
+
+        /**
+         * @return The method called, or null if this is a lock or unlock (or a call to something that isn't ours)
+         */
+        public MethodBlock getCallee() { return callee; }
+    }
+
+    // Everything, including calls we couldn't find
+    private final List<Entry> steps = new ArrayList<>();
+    // Just the locks, unlocks and calls to our own methods
+    private final List<Entry> entries = new ArrayList<>();
+    private final Set<MethodBlock> callees = new LinkedHashSet<>();
+    // The packed lock event for each entry (see LockSymbolTable), and which table they came from
+    private long[] lockEvents;
+    private LockSymbolTable lockTable;
+
+    void addLockInfo(LockInfo lockInfo)
+    {
+        Entry entry = new Entry(lockInfo, null, null);
+        steps.add(entry);
+        entries.add(entry);
+    }
+
+    /**
+     * A call that could go to any of several methods (i.e. overrides) gets an entry for each one, one after
+     * the other, so a walk goes through all of them with the same locks held
+     *
+     * @param reference The call
+     * @param targets The methods it could call (empty if none of them are ours)
+     */
+    void addCall(MethodReference reference, List<MethodBlock> targets)
+    {
+        steps.add(new Entry(null, reference, targets.isEmpty() ? null : targets.get(0)));
+        for ( MethodBlock callee : targets)
+        {
+            entries.add(new Entry(null, reference, callee));
+            callees.add(callee);
+        }
+    }
+
+    /**
+     * @return Every lock, unlock and call to one of our methods, in order
+     */
+    public List<Entry> getEntries()
+    {
+        return Collections.unmodifiableList(entries);
+    }
+
+    /**
+     * @return Every lock, unlock and call (even to methods we don't have), in order
+     */
+    public List<Entry> getSteps()
+    {
+        return Collections.unmodifiableList(steps);
+    }
+
+    /**
+     * @return The methods this method calls directly, in the order they're first called
+     */
+    public Set<MethodBlock> getCallees()
+    {
+        return Collections.unmodifiableSet(callees);
+    }
+
+    /**
+     * Give every lock and unlock in this summary its packed event
+     *
+     * @param lockTable Table to intern the locks in
+     */
+    synchronized void internLocks(LockSymbolTable lockTable)
+    {
+        if ( this.lockTable == lockTable)
+        {
+            return;
+        }
+
+        long[] events = new long[entries.size()];
+        for ( int i=0; i<entries.size(); i++)
+        {
+            LockInfo lockInfo = entries.get(i).lockInfo;
+            if ( lockInfo != null)
+            {
+                events[i] = lockTable.intern(lockInfo);
+            }
+        }
+        lockEvents = events;
+        this.lockTable = lockTable;
+    }
+
+    /**
+     * @param index Position of a lock or unlock in {@link #getEntries()}
+     * @return Its packed event (only valid after {@link #internLocks})
+     */
+    long getLockEvent(int index)
+    {
+        return lockEvents[index];
+    }
+
+    /**
+     * Look up all the calls again
+     *
+     * @param symbolIndex Index of all the classes we know about now
+     * @return The same summary, with its calls going to the methods in that index
+     */
+    LockSummary resolve(SymbolIndex symbolIndex)
+    {
+        LockSummary resolved = new LockSummary();
+        for ( Entry step : steps)
+        {
+            if ( step.isCall())
+            {
+                resolved.addCall(step.reference, step.reference.resolveTargets(symbolIndex));
+            }
+            else
+            {
+                resolved.addLockInfo(step.lockInfo);
+            }
+        }
+        return resolved;
+    }
+}
@@ -0,0 +1,85 @@
+package edu.ttu.erikpeterson.cs5381.parser.block;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Gives every lock (a name and type) a small int id, so walks can record lock events as plain longs and the
+ * deadlock scan can compare locks without touching strings.
+ *
+ * An event packs three things into a long: which LockInfo it came from (its "site", so the report can still say
+ * where it was found), the lock's id and whether it's a lock or an unlock:
+ *
+ * <pre>
+ *   bits 63-32  site
+ *   bits 31-1   lock id
+ *   bit  0      1 for a lock, 0 for an unlock
+ * </pre>
+ *
+ * Safe to use from several walks at once.
+ */
+public class LockSymbolTable {
+
+    private final Map<String, Integer> lockIds = new HashMap<>();
+    private final List<LockInfo> sites = new ArrayList<>();
+
+    /**
+     * Intern a lock or unlock
+     *
+     * @param lockInfo The lock or unlock
+     * @return Its event
+     */
+    public synchronized long intern(LockInfo lockInfo)
+    {
+        String key = lockInfo.getName() + '\u0000' + lockInfo.getType();
+        Integer lockId = lockIds.get(key);
+        if ( lockId == null)
+        {
+            lockId = lockIds.size();
+            lockIds.put(key, lockId);
+        }
+
+        int site = sites.size();
+        sites.add(lockInfo);
+        return event(site, lockId, lockInfo.isLock());
+    }
+
+    /**
+     * @return How many different locks there are
+     */
+    public synchronized int getLockCount()
+    {
+        return lockIds.size();
+    }
+
+    /**
+     * @param site Where an event came from (see {@link #site})
+     * @return The LockInfo for that event
+     */
+    public synchronized LockInfo getLockInfo(int site)
+    {
+        return sites.get(site);
+    }
+
+    public static long event(int site, int lockId, boolean lock)
+    {
+        return ((long) site << 32) | ((long) lockId << 1) | (lock ? 1 : 0);
+    }
+
+    public static int site(long event)
+    {
+        return (int) (event >>> 32);
+    }
+
+    public static int lockId(long event)
+    {
+        return (int) (event & 0xFFFFFFFFL) >>> 1;
+    }
+
+    public static boolean isLock(long event)
+    {
+        return (event & 1) != 0;
+    }
+}
@@ -0,0 +1,63 @@
+package edu.ttu.erikpeterson.cs5381.parser.block;
+
+import java.util.Arrays;
+
+/**
+ * A growable list of longs, without boxing each one
+ */
+public final class LongArrayList {
+
+    private long[] values;
+    private int size;
+
+    public LongArrayList()
+    {
+        this(16);
+    }
+
+    /**
+     * @param capacity How many values to make room for up front
+     */
+    public LongArrayList(int capacity)
+    {
+        values = new long[Math.max(capacity, 1)];
+    }
+
+    public void add(long value)
+    {
+        if ( size == values.length)
+        {
+            values = Arrays.copyOf(values, size * 2);
+        }
+        values[size++] = value;
+    }
+
+    public long get(int index)
+    {
+        if ( index >= size)
+        {
+            throw new IndexOutOfBoundsException("Index " + index + ", size " + size);
+        }
+        return values[index];
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    public boolean isEmpty()
+    {
+        return size == 0;
+    }
+
+    public void clear()
+    {
+        size = 0;
+    }
+
+    public long[] toArray()
+    {
+        return Arrays.copyOf(values, size);
+    }
+}
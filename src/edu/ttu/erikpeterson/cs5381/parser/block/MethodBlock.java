@@ -1,11 +1,15 @@
 package edu.ttu.erikpeterson.cs5381.parser.block;
 
+import edu.ttu.erikpeterson.cs5381.instrumentation.Instrumentation;
 import edu.ttu.erikpeterson.cs5381.parser.lockCheckers.LockFinder;
 import edu.ttu.erikpeterson.cs5381.parser.lockCheckers.LockFinderFactory;
+import edu.ttu.erikpeterson.cs5381.parser.lockCheckers.LockFinderState;
+import edu.ttu.erikpeterson.cs5381.parser.lockCheckers.LockKeywordScanner;
 
 import java.text.ParseException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.regex.Matcher;
@@ -23,34 +27,41 @@ public class MethodBlock extends CodeBlock {
     // This one is for new Something().method(...)
     private static final Pattern METHOD_CALL_PATTERN_2 = Pattern.compile("new\\s+(\\w+)\\s*\\([\\s\\w]*\\)\\s*\\.\\s*(\\w+)\\s*\\(");
     private static final Pattern INTRA_CLASS_METHOD_CALL = Pattern.compile("\\s*(\\w+)\\s*\\(");
+    // Arguments we can tell the type of
+    private static final Pattern IDENTIFIER_ARGUMENT = Pattern.compile("\\w+");
+    private static final Pattern NEW_OBJECT_ARGUMENT = Pattern.compile("new\\s+(\\w+)\\s*(<[^>]*>)?\\s*\\(.*\\)");
 
 
     private final Map<String, String> variables = new HashMap<>();
     private boolean foundVariables = false;
-    private boolean walkingMethod = false;
-    private List<LockFinder> lockFinders;
+    private LockSummary lockSummary;
+    private SymbolIndex lockSummaryIndex;
+    // Only ever worked out from the (unchanging) declaration, so it doesn't need a lock
+    private volatile MethodSignature signature;
 
     private String thisMethodsCode = "";
+    // Where the statements are in thisMethodsCode
+    private StatementIndex statementIndex;
+    // Builds the blocks nested in this method, if the parser left them for later
+    private Runnable deferredBody;
 
 
     /**
      * Constructor
      *
-     * @param blockInfo Block information
      * @param blockType Kind of block
-     * @param contents Block contents
      * @param fileContents Full file contents
      * @param startPosition Start of this block in the file (including block info)
+     * @param openBracePosition Position of the '{' that opens this block
      * @param endPosition End of this block in the file
      */
-    MethodBlock(String blockInfo,
-                CodeBlockType blockType,
-                String contents,
+    MethodBlock(CodeBlockType blockType,
                 String fileContents,
                 int startPosition,
+                int openBracePosition,
                 int endPosition)
     {
-        super(blockInfo, blockType, contents, fileContents, startPosition, endPosition);
+        super(blockType, fileContents, startPosition, openBracePosition, endPosition);
     }
 
     @Override
@@ -63,18 +74,18 @@ public class MethodBlock extends CodeBlock {
 
         MethodBlock otherMethodBlock = (MethodBlock) other;
         return ( startPosition == otherMethodBlock.startPosition &&
+                 openBracePosition == otherMethodBlock.openBracePosition &&
                  endPosition == otherMethodBlock.endPosition &&
                  blockType == otherMethodBlock.blockType &&
-                 blockInfo.equals(otherMethodBlock.blockInfo) &&
-                 contents.equals(otherMethodBlock.contents));
+                 fileContents.equals(otherMethodBlock.fileContents));
     }
 
     @Override
     public int hashCode() {
-        return 31 * blockInfo.hashCode() + contents.hashCode();
+        return 31 * startPosition + endPosition;
     }
 
-    public Map<String, String> getVariables()
+    public synchronized Map<String, String> getVariables()
     {
         if ( !foundVariables)
         {
@@ -83,7 +94,39 @@ public class MethodBlock extends CodeBlock {
         return variables;
     }
 
-    public String getThisMethodsCode()
+    /**
+     * Leave the blocks nested in this method (loops, try/catch, anonymous classes, ...) until this method's code
+     * is actually needed. Until then, {@link #getSubCodeBlocks()} is empty.
+     *
+     * @param bodyParser Adds the nested blocks to this method
+     */
+    public synchronized void setDeferredBody(Runnable bodyParser)
+    {
+        deferredBody = bodyParser;
+    }
+
+    /**
+     * @return False if the blocks nested in this method haven't been built yet
+     */
+    public synchronized boolean isBodyParsed()
+    {
+        return deferredBody == null;
+    }
+
+    /**
+     * Build the blocks nested in this method, if that was left for later
+     */
+    synchronized void parseBody()
+    {
+        if ( deferredBody != null)
+        {
+            Runnable bodyParser = deferredBody;
+            deferredBody = null;
+            bodyParser.run();
+        }
+    }
+
+    public synchronized String getThisMethodsCode()
     {
         if ( thisMethodsCode.isEmpty())
         {
@@ -93,25 +136,192 @@ public class MethodBlock extends CodeBlock {
     }
 
     /**
-     * Walk through this method, looking for locks and unlocks
+     * @return Where the statements are in {@link #getThisMethodsCode()}, which is what the lock finders go through
+     */
+    public synchronized StatementIndex getStatementIndex()
+    {
+        if ( statementIndex == null)
+        {
+            findThisMethodsCode();
+            statementIndex = new StatementIndex(thisMethodsCode);
+        }
+        return statementIndex;
+    }
+
+    /**
+     * Walk through this method, looking for locks and unlocks. Calls to our other methods are walked too.
+     *
+     * @param symbolIndex Index of all the classes we know about
+     * @param lockInfoList Where to put the locks and unlocks we find
      */
-    public void walkMethod(List<CodeBlock> allCodeBlocks, List<LockInfo> lockInfoList)
+    public void walkMethod(SymbolIndex symbolIndex, List<LockInfo> lockInfoList)
     {
-        // Don't allow recursion or returning to this method from elsewhere
-        if ( walkingMethod)
+        LongArrayList lockEvents = new LongArrayList();
+        walkMethod(new WalkContext(symbolIndex, lockEvents));
+
+        LockSymbolTable lockTable = symbolIndex.getLockTable();
+        for ( int i=0; i<lockEvents.size(); i++)
+        {
+            lockInfoList.add(lockTable.getLockInfo(LockSymbolTable.site(lockEvents.get(i))));
+        }
+    }
+
+    /**
+     * Walk through this method as part of a larger walk. Different walks can run at the same time.
+     *
+     * Calls are followed with an explicit stack rather than by recursing, so a deep call chain can't
+     * overflow the Java stack; how deep it goes is up to the context's maximum depth.
+     *
+     * @param context The walk we're part of
+     */
+    public void walkMethod(WalkContext context)
+    {
+        if ( !context.enterMethod(this, 1))
         {
             return;
         }
-        walkingMethod = true;
-        lockFinders = LockFinderFactory.buildAllLockFinders(this);
+
+        ArrayDeque<WalkFrame> callStack = new ArrayDeque<>();
+        callStack.push(new WalkFrame(this, getLockSummary(context.getSymbolIndex())));
+
+        while ( !callStack.isEmpty())
+        {
+            WalkFrame frame = callStack.peek();
+            List<LockSummary.Entry> entries = frame.summary.getEntries();
+            if ( frame.next >= entries.size())
+            {
+                callStack.pop();
+                context.exitMethod(frame.method);
+                continue;
+            }
+
+            int i = frame.next++;
+            LockSummary.Entry entry = entries.get(i);
+            if ( !entry.isCall())
+            {
+                context.addLockEvent(frame.summary.getLockEvent(i));
+                continue;
+            }
+
+            // Don't allow recursion, or going deeper than we were told to
+            MethodBlock callee = entry.getCallee();
+            if ( context.enterMethod(callee, callStack.size() + 1))
+            {
+                callStack.push(new WalkFrame(callee, callee.getLockSummary(context.getSymbolIndex())));
+            }
+        }
+    }
+
+    /**
+     * A method part way through being walked, and where we are in it
+     */
+    private static final class WalkFrame {
+        private final MethodBlock method;
+        private final LockSummary summary;
+        private int next;
+
+        private WalkFrame(MethodBlock method, LockSummary summary)
+        {
+            this.method = method;
+            this.summary = summary;
+        }
+    }
+
+    /**
+     * Get the summary of what this method does with locks. It's worked out the first time it's asked for
+     * and reused after that. If we're asked about a different set of classes, only the calls are looked up
+     * again. Safe to call from several walks at once.
+     *
+     * @param symbolIndex Index of all the classes we know about (used to find the methods we call)
+     * @return This method's lock summary
+     */
+    public synchronized LockSummary getLockSummary(SymbolIndex symbolIndex)
+    {
+        if ( lockSummary == null)
+        {
+            long start = Instrumentation.start();
+            lockSummary = buildLockSummary(symbolIndex);
+            lockSummaryIndex = symbolIndex;
+            Instrumentation.stop(Instrumentation.Phase.BUILD_LOCK_SUMMARIES, start);
+        }
+        else if ( lockSummaryIndex != symbolIndex)
+        {
+            lockSummary = lockSummary.resolve(symbolIndex);
+            lockSummaryIndex = symbolIndex;
+        }
+        lockSummary.internLocks(symbolIndex.getLockTable());
+        return lockSummary;
+    }
+
+    /**
+     * @return This method's variables, or null if they haven't been found yet
+     */
+    synchronized Map<String, String> getFoundVariables()
+    {
+        return foundVariables ? variables : null;
+    }
+
+    /**
+     * @return This method's lock summary, or null if it hasn't been worked out yet
+     */
+    synchronized LockSummary getFoundLockSummary()
+    {
+        return lockSummary;
+    }
+
+    /**
+     * Use what was found earlier (e.g. in a cached copy of this file) instead of reading the method again.
+     * The summary's calls are looked up the first time it's used.
+     *
+     * @param variables This method's variables (null if they weren't found)
+     * @param summary This method's lock summary (null if it wasn't worked out)
+     */
+    synchronized void restore(Map<String, String> variables, LockSummary summary)
+    {
+        if ( variables != null)
+        {
+            this.variables.clear();
+            this.variables.putAll(variables);
+            foundVariables = true;
+        }
+        lockSummary = summary;
+        lockSummaryIndex = null;
+    }
+
+    /**
+     * @return This method's name and parameter types
+     */
+    public MethodSignature getSignature()
+    {
+        MethodSignature found = signature;
+        if ( found == null)
+        {
+            found = MethodSignature.parse(getBlockInfoView(), name);
+            signature = found;
+        }
+        return found;
+    }
+
+    /**
+     * @return Number of parameters this method takes
+     */
+    public int getParameterCount()
+    {
+        return getSignature().getArity();
+    }
+
+    private LockSummary buildLockSummary(SymbolIndex symbolIndex)
+    {
+        LockSummary summary = new LockSummary();
+        List<LockFinder> lockFinders = LockFinderFactory.getAllLockFinders();
 
         // Check to see if this method is synchronized. If so, add a lock with the class's name
         ClassBlock classBlock = getClassParent();
         boolean synchronizedMethod = false;
-        if ( blockInfo.contains(" synchronized "))
+        if ( getBlockInfoView().contains(" synchronized "))
         {
             synchronizedMethod = true;
-            lockInfoList.add(new LockInfo("this", classBlock.getName(), this, true));
+            summary.addLockInfo(new LockInfo("this", classBlock.getName(), this, true));
         }
 
         // Get ready
@@ -119,21 +329,36 @@ public class MethodBlock extends CodeBlock {
         {
             findVariables();
         }
-        findThisMethodsCode();
+        StatementIndex statements = getStatementIndex();
 
-        List<String> statements = splitMethodIntoStatements();//thisMethodsCode.split("[{;}]");
-        for ( String statement : statements)
+        LockFinderState lockFinderState = new LockFinderState(this);
+        List<LockInfo> statementLocks = new ArrayList<>();
+        Instrumentation.count(Instrumentation.Counter.STATEMENTS_SCANNED, statements.size());
+        for ( int i=0; i<statements.size(); i++)
         {
-            checkForLocks(statement, lockInfoList);
-            checkForMethodCall(statement, allCodeBlocks, lockInfoList);
+            SourceSlice statement = statements.getStatement(i);
+            checkForLocks(lockFinders, lockFinderState, statement, statementLocks);
+            for ( LockInfo lockInfo : statementLocks)
+            {
+                summary.addLockInfo(lockInfo);
+            }
+            statementLocks.clear();
+
+            MethodReference call = checkForMethodCall(statement);
+            if ( call != null)
+            {
+                List<MethodBlock> targets = call.resolveTargets(symbolIndex);
+                Instrumentation.count(targets.isEmpty() ? Instrumentation.Counter.CALLS_UNRESOLVED : Instrumentation.Counter.CALLS_RESOLVED, 1);
+                summary.addCall(call, targets);
+            }
         }
 
         if ( synchronizedMethod)
         {
             // Remove the lock on the class object
-            lockInfoList.add(new LockInfo("this", classBlock.getName(), this, false));
+            summary.addLockInfo(new LockInfo("this", classBlock.getName(), this, false));
         }
-        walkingMethod = false;
+        return summary;
     }
 
     public ClassBlock getClassParent()
@@ -158,78 +383,61 @@ public class MethodBlock extends CodeBlock {
         return getClassParent().getName() + "." + name;
     }
 
-    private List<String> splitMethodIntoStatements()
+    private static void checkForLocks(List<LockFinder> lockFinders,
+                                      LockFinderState lockFinderState,
+                                      SourceSlice statement,
+                                      List<LockInfo> lockInfoList)
     {
-        List<String> statements = new LinkedList<>();
-
-        int indexOfSemicolon;
-        int indexOfOpenBrace;
-        int indexOfCloseBrace;
-        int lastIndex = 0;
-
-        while ( true)
+        // One scan for keywords, then only the finders that could match get to run their regexes
+        int keywords = LockKeywordScanner.scan(statement);
+        if ( (keywords & (LockKeywordScanner.LOCK_KEYWORDS | LockKeywordScanner.BRACE)) == 0)
         {
-            indexOfSemicolon = thisMethodsCode.indexOf(';', lastIndex);
-            indexOfOpenBrace = thisMethodsCode.indexOf('{', lastIndex);
-            indexOfCloseBrace = thisMethodsCode.indexOf('}', lastIndex);
-
-            if ( indexOfSemicolon < 0)
-            {
-                indexOfSemicolon = Integer.MAX_VALUE;
-            }
-            if ( indexOfOpenBrace < 0)
-            {
-                indexOfOpenBrace = Integer.MAX_VALUE;
-            }
-            if ( indexOfCloseBrace < 0)
-            {
-                indexOfCloseBrace = Integer.MAX_VALUE;
-            }
-
-            int nextBreak = Math.min(indexOfSemicolon, Math.min(indexOfOpenBrace, indexOfCloseBrace));
-
-            if ( nextBreak == Integer.MAX_VALUE)
-            {
-                // Didn't find anything
-                break;
-            }
-
-            // Add one so we get the ;/{/}
-            nextBreak++;
-
-            statements.add(thisMethodsCode.substring(lastIndex, nextBreak));
-            lastIndex = nextBreak;
+            return;
         }
 
-        return statements;
-    }
-
-    private void checkForLocks(String statement, List<LockInfo> lockInfoList)
-    {
-        for ( LockFinder lockFinder : lockFinders)
+        for ( int i=0; i<lockFinders.size(); i++)
         {
-            lockFinder.checkStatement(statement, lockInfoList);
+            LockFinder lockFinder = lockFinders.get(i);
+            if ( lockFinder.mightMatch(keywords))
+            {
+                int found = lockInfoList.size();
+                lockFinder.checkStatement(statement, lockFinderState, lockInfoList);
+                if ( lockInfoList.size() > found && Instrumentation.isEnabled())
+                {
+                    Instrumentation.countLockFinderMatch(lockFinder.getClass().getSimpleName());
+                }
+            }
         }
     }
 
-    private void checkForMethodCall(String statement, List<CodeBlock> allCodeBlocks, List<LockInfo> lockInfoList)
+    /**
+     * See if a statement calls a method
+     *
+     * @param statement Statement to check
+     * @return The call, or null if there isn't one
+     */
+    private MethodReference checkForMethodCall(SourceSlice statement)
     {
         Matcher regularCallMatcher = METHOD_CALL_PATTERN_1.matcher(statement);
         Matcher newCallMatcher = METHOD_CALL_PATTERN_2.matcher(statement);
         Matcher intraClassMatcher = INTRA_CLASS_METHOD_CALL.matcher(statement);
         String variableOrClass;
         String method;
+        // All of the call patterns end at the call's '('
+        int openParen;
 
         // Note that this does not cover nested calls e.g. myString.substring(...).length
         if ( regularCallMatcher.find())
         {
             variableOrClass = regularCallMatcher.group(1);
             method = regularCallMatcher.group(2);
+            openParen = regularCallMatcher.end() - 1;
         }
         else if ( newCallMatcher.find())
         {
             variableOrClass = newCallMatcher.group(1);
             method = newCallMatcher.group(2);
+            openParen = newCallMatcher.end() - 1;
         }
         // This regex will also catch new Thread(), in which we need to call the constructor
         else if ( intraClassMatcher.find())
@@ -242,20 +450,22 @@ public class MethodBlock extends CodeBlock {
             }
             else
             {
-                variableOrClass = findTopParent().getName();
+                // Our own class first; the index falls back to the classes it's nested in
+                variableOrClass = getClassParent().getName();
                 method = intraClassMatcher.group(1);
             }
+            openParen = intraClassMatcher.end() - 1;
         }
         else
         {
             // No match
-            return;
+            return null;
         }
 
         // Note that there's a hole here for inner classes (such as calling OuterClass.this.method())
         if ( variableOrClass.equals("this"))
         {
-            variableOrClass = this.parent.getName();
+            variableOrClass = getClassParent().getName();
         }
 
         if ( variables.containsKey(variableOrClass))
@@ -264,31 +474,77 @@ public class MethodBlock extends CodeBlock {
             variableOrClass = variables.get(variableOrClass);
         }
         // Remove any generic info (<..>)
-        variableOrClass = variableOrClass.replaceAll("<\\s*>", "");
+        int genericStart = variableOrClass.indexOf('<');
+        if ( genericStart >= 0)
+        {
+            variableOrClass = variableOrClass.substring(0, genericStart);
+        }
 
-        for ( CodeBlock codeBlock : allCodeBlocks)
+        // The arguments pick between overloads when the whole call is in this statement
+        return new MethodReference(variableOrClass, new MethodSignature(method, findArgumentTypes(statement, openParen)));
+    }
+
+    /**
+     * Work out what we can about a call's arguments. Only variables we know, "this" and new objects
+     * have a type we can be sure of; anything else is left null.
+     *
+     * @param statement Statement holding the call
+     * @param openParen Position of the call's '('
+     * @return The argument types, or null if the argument list isn't closed in this statement
+     */
+    private String[] findArgumentTypes(SourceSlice statement, int openParen)
+    {
+        List<String> types = new ArrayList<>();
+        int depth = 0;
+        int argumentStart = openParen + 1;
+
+        for ( int position=openParen + 1; position<statement.length(); position++)
         {
-            if (codeBlock.getName().equals(variableOrClass))
+            char current = statement.charAt(position);
+            if ( current == '(' || current == '[')
+            {
+                depth++;
+            }
+            else if ( current == ']' || (current == ')' && depth > 0))
             {
-                // Found one of our classes. See if it has this method
-                // Another hole here: this doesn't consider method overloads (e.g. substring(int) and substring(int, int)
-                for ( CodeBlock subCodeBlock : codeBlock.getSubCodeBlocks())
+                depth--;
+            }
+            else if ( depth == 0 && (current == ',' || current == ')'))
+            {
+                SourceSlice argument = statement.subSequence(argumentStart, position).trim();
+                if ( current == ',' || argument.length() > 0 || !types.isEmpty())
+                {
+                    types.add(findArgumentType(argument));
+                }
+                if ( current == ')')
                 {
-                    if ( subCodeBlock == null || subCodeBlock.getName() == null)
-                    {
-                        continue;
-                    }
-
-                    if ( subCodeBlock instanceof MethodBlock &&
-                         subCodeBlock.getName().equals(method))
-                    {
-                        // We found something we should call!
-                        ((MethodBlock) subCodeBlock).walkMethod(allCodeBlocks, lockInfoList);
-                        return;
-                    }
+                    return types.toArray(new String[0]);
                 }
+                argumentStart = position + 1;
             }
         }
+        return null;
+    }
+
+    private String findArgumentType(SourceSlice argument)
+    {
+        Matcher newObjectMatcher = NEW_OBJECT_ARGUMENT.matcher(argument);
+        if ( newObjectMatcher.matches())
+        {
+            return newObjectMatcher.group(1);
+        }
+        if ( !IDENTIFIER_ARGUMENT.matcher(argument).matches())
+        {
+            return null;
+        }
+
+        String identifier = argument.toString();
+        if ( identifier.equals("this"))
+        {
+            return getClassParent().getName();
+        }
+        String type = variables.get(identifier);
+        return type == null ? null : MethodSignature.simpleName(type);
     }
 
     private ClassBlock findTopParent()
@@ -318,10 +574,11 @@ public class MethodBlock extends CodeBlock {
             // Already done
             return;
         }
+        parseBody();
 
         if ( subCodeBlocks.isEmpty())
         {
-            thisMethodsCode = contents;
+            thisMethodsCode = getContents();
             return;
         }
 
@@ -377,37 +634,44 @@ public class MethodBlock extends CodeBlock {
         {
             return;
         }
-        String[] statements = contents.split("[;\\{\\}]");
-
-        for ( String statement : statements)
+        long start = Instrumentation.start();
+        // Everything between the braces, split at (and without) each ';', '{' and '}'
+        StatementIndex statements = new StatementIndex(fileContents, openBracePosition + 1, endPosition);
+        for ( int i=0; i<statements.size(); i++)
         {
-            statement = statement.trim();
-            // Don't care about return statements
-            if ( statement.startsWith("return")) {
-                continue;
-            }
-            Matcher variableDeclareAssignMatcher = VARIABLE_DECLARE_ASSIGN.matcher(statement);
-            Matcher variableDeclareMatcher = VARIABLE_DECLARE.matcher(statement);
-            if ( variableDeclareAssignMatcher.find())
-            {
-                if ( !variables.containsKey(variableDeclareAssignMatcher.group(3)))
-                {
-                    variables.put(variableDeclareAssignMatcher.group(3), variableDeclareAssignMatcher.group(2));
-
-                }
-            }
-            else if (variableDeclareMatcher.find())
-            {
-                if ( !variables.containsKey(variableDeclareAssignMatcher.group(3)))
-                {
-                    variables.put(variableDeclareMatcher.group(3), variableDeclareMatcher.group(2));
-                }
-            }
+            findVariable(new SourceSlice(fileContents, statements.getStart(i), statements.getEnd(i) - 1));
         }
+        findVariable(new SourceSlice(fileContents, statements.getRemainderStart(), statements.getRangeEnd()));
 
         // Add all the class variables so they're easier to find
         variables.putAll(findTopParent().getClassVariables());
         foundVariables = true;
+        Instrumentation.stop(Instrumentation.Phase.FIND_VARIABLES, start);
+    }
+
+    /**
+     * Add the variable a statement declares, if it declares one (the first declaration of a name wins)
+     *
+     * @param statement Statement without its ';', '{' or '}'
+     */
+    private void findVariable(SourceSlice statement)
+    {
+        statement = statement.trim();
+        // Don't care about return statements
+        if ( statement.startsWith("return")) {
+            return;
+        }
+        Matcher variableDeclareAssignMatcher = VARIABLE_DECLARE_ASSIGN.matcher(statement);
+        if ( variableDeclareAssignMatcher.find())
+        {
+            variables.putIfAbsent(variableDeclareAssignMatcher.group(3), variableDeclareAssignMatcher.group(2));
+            return;
+        }
+        Matcher variableDeclareMatcher = VARIABLE_DECLARE.matcher(statement);
+        if ( variableDeclareMatcher.find())
+        {
+            variables.putIfAbsent(variableDeclareMatcher.group(3), variableDeclareMatcher.group(2));
+        }
     }
 
 }
@@ -0,0 +1,71 @@
+package edu.ttu.erikpeterson.cs5381.parser.block;
+
+import java.util.List;
+
+/**
+ * A call as it's written: the class (or the variable's type), the method name and the arguments passed
+ * (how many, and the types we could tell). It doesn't depend on any other file, so it can be kept and looked up again later, when
+ * the set of classes has changed.
+ */
+public final class MethodReference {
+
+    private final String className;
+    private final MethodSignature signature;
+
+    /**
+     * Constructor
+     *
+     * @param className Class the method should be in
+     * @param methodName Method name
+     * @param arity Number of arguments in the call (or -1 if we don't know)
+     */
+    public MethodReference(String className, String methodName, int arity)
+    {
+        this(className, MethodSignature.forCall(methodName, arity));
+    }
+
+    /**
+     * Constructor
+     *
+     * @param className Class the method should be in
+     * @param signature The method name and whatever we know about the arguments
+     */
+    public MethodReference(String className, MethodSignature signature)
+    {
+        this.className = className;
+        this.signature = signature;
+    }
+
+    public String getClassName() { return className; }
+
+    public String getMethodName() { return signature.getName(); }
+
+    public int getArity() { return signature.getArity(); }
+
+    public MethodSignature getSignature() { return signature; }
+
+    /**
+     * @param symbolIndex Index of all the classes we know about
+     * @return The method the class itself would run (its own or an inherited one), or null if it isn't one of ours
+     */
+    public MethodBlock resolve(SymbolIndex symbolIndex)
+    {
+        List<MethodBlock> targets = resolveTargets(symbolIndex);
+        return targets.isEmpty() ? null : targets.get(0);
+    }
+
+    /**
+     * @param symbolIndex Index of all the classes we know about
+     * @return Every method the call could run, overrides included (see {@link SymbolIndex#getTargets})
+     */
+    public List<MethodBlock> resolveTargets(SymbolIndex symbolIndex)
+    {
+        return symbolIndex.getTargets(className, signature);
+    }
+
+    @Override
+    public String toString()
+    {
+        return className + "." + signature;
+    }
+}
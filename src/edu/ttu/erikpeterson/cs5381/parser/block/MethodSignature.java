@@ -0,0 +1,278 @@
+package edu.ttu.erikpeterson.cs5381.parser.block;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * A method's name and parameter types, e.g. transfer(Account, int), used as the key for finding methods.
+ * Types are simple names without type arguments, the same as everywhere else.
+ *
+ * The same class describes a call, where some argument types (or even the number of arguments) may not be
+ * known; an unknown type is null and matches any parameter type. The hash is worked out once up front, so
+ * these are cheap map keys.
+ */
+public final class MethodSignature {
+
+    private static final String[] UNKNOWN_ARITY = new String[0];
+
+    private final String name;
+    // Null if we don't know how many arguments there are
+    private final String[] parameterTypes;
+    private final int hash;
+    // Same name and number of parameters, with every type unknown
+    private final MethodSignature shape;
+
+    /**
+     * Constructor
+     *
+     * @param name Method name
+     * @param parameterTypes Parameter (or argument) types, with null for any we don't know
+     */
+    public MethodSignature(String name, String[] parameterTypes)
+    {
+        this.name = name;
+        this.parameterTypes = parameterTypes == null ? null : parameterTypes.clone();
+        hash = 31 * Objects.hashCode(name) + (parameterTypes == null ? -1 : Arrays.hashCode(parameterTypes));
+
+        boolean anyKnown = false;
+        for ( int i=0; parameterTypes != null && i<parameterTypes.length; i++)
+        {
+            anyKnown |= parameterTypes[i] != null;
+        }
+        shape = anyKnown ? new MethodSignature(name, new String[parameterTypes.length]) : this;
+    }
+
+    /**
+     * @param name Method name
+     * @param arity Number of arguments (or -1 if we don't know)
+     * @return A call's signature when none of the argument types are known
+     */
+    public static MethodSignature forCall(String name, int arity)
+    {
+        return new MethodSignature(name, arity < 0 ? null : new String[arity]);
+    }
+
+    /**
+     * Read a method's signature from its declaration
+     *
+     * @param declaration The text before the method's '{'
+     * @param name The method's name (null if it doesn't have one)
+     * @return The signature (no parameters if there's no parameter list to read)
+     */
+    public static MethodSignature parse(CharSequence declaration, String name)
+    {
+        int openParen = -1;
+        int nameAt = name == null ? -1 : indexOf(declaration, name);
+        for ( int position=Math.max(nameAt, 0); position<declaration.length(); position++)
+        {
+            if ( declaration.charAt(position) == '(')
+            {
+                openParen = position;
+                break;
+            }
+        }
+        if ( openParen < 0)
+        {
+            return new MethodSignature(name, UNKNOWN_ARITY);
+        }
+
+        List<String> types = new ArrayList<>();
+        StringBuilder parameter = new StringBuilder();
+        int depth = 0;
+        for ( int position=openParen + 1; position<declaration.length(); position++)
+        {
+            char current = declaration.charAt(position);
+            if ( current == '(' || current == '<')
+            {
+                depth++;
+            }
+            else if ( current == '>')
+            {
+                depth--;
+            }
+            else if ( current == ')' && depth > 0)
+            {
+                depth--;
+            }
+            else if ( depth == 0 && (current == ',' || current == ')'))
+            {
+                addParameterType(parameter, types);
+                parameter.setLength(0);
+                if ( current == ')')
+                {
+                    break;
+                }
+            }
+            else if ( depth == 0)
+            {
+                // Annotation arguments and type arguments don't make it in
+                parameter.append(current);
+            }
+        }
+        return new MethodSignature(name, types.toArray(new String[0]));
+    }
+
+    /**
+     * Take the name (and anything like final or an annotation) off a parameter, leaving its type
+     */
+    private static void addParameterType(CharSequence parameter, List<String> types)
+    {
+        String[] words = parameter.toString().trim().split("\\s+");
+        if ( words.length < 2)
+        {
+            // Nothing there (i.e. no parameters at all)
+            return;
+        }
+
+        StringBuilder type = new StringBuilder();
+        for ( int i=0; i<words.length - 1; i++)
+        {
+            if ( !words[i].equals("final") && !words[i].startsWith("@"))
+            {
+                type.append(words[i]);
+            }
+        }
+        types.add(simpleName(type.toString()));
+    }
+
+    /**
+     * @param type A type as written
+     * @return The type without its package, type arguments or spaces (e.g. java.util.List<String> -> List)
+     */
+    public static String simpleName(String type)
+    {
+        StringBuilder simple = new StringBuilder(type.length());
+        int depth = 0;
+        for ( int i=0; i<type.length(); i++)
+        {
+            char current = type.charAt(i);
+            if ( current == '<')
+            {
+                depth++;
+            }
+            else if ( current == '>')
+            {
+                depth--;
+            }
+            else if ( depth == 0 && !Character.isWhitespace(current))
+            {
+                simple.append(current);
+            }
+        }
+
+        // Varargs dots aren't a package
+        int end = simple.length();
+        while ( end > 0 && (simple.charAt(end - 1) == '.' || simple.charAt(end - 1) == '[' || simple.charAt(end - 1) == ']'))
+        {
+            end--;
+        }
+        String suffix = simple.substring(end);
+        String base = simple.substring(0, end);
+        return base.substring(base.lastIndexOf('.') + 1) + suffix;
+    }
+
+    private static int indexOf(CharSequence text, String wanted)
+    {
+        for ( int position=0; position<=text.length() - wanted.length(); position++)
+        {
+            int i = 0;
+            while ( i < wanted.length() && text.charAt(position + i) == wanted.charAt(i))
+            {
+                i++;
+            }
+            if ( i == wanted.length())
+            {
+                return position;
+            }
+        }
+        return -1;
+    }
+
+    public String getName() { return name; }
+
+    /**
+     * @return Number of parameters (or arguments), or -1 if we don't know
+     */
+    public int getArity()
+    {
+        return parameterTypes == null ? -1 : parameterTypes.length;
+    }
+
+    /**
+     * @param index Which parameter
+     * @return Its type, or null if we don't know it
+     */
+    public String getParameterType(int index)
+    {
+        return parameterTypes[index];
+    }
+
+    /**
+     * @return The same name and number of parameters with every type unknown, which is what overloads are
+     *         grouped by
+     */
+    public MethodSignature getShape()
+    {
+        return shape;
+    }
+
+    /**
+     * @param call A call's signature
+     * @return True if the call could go to a method with this signature (unknown types match anything; no
+     *         attempt is made at subtypes or boxing)
+     */
+    public boolean accepts(MethodSignature call)
+    {
+        if ( !Objects.equals(name, call.name) || getArity() != call.getArity())
+        {
+            return false;
+        }
+        for ( int i=0; i<getArity(); i++)
+        {
+            if ( parameterTypes[i] != null && call.parameterTypes[i] != null &&
+                 !parameterTypes[i].equals(call.parameterTypes[i]))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean equals(Object other)
+    {
+        if ( !(other instanceof MethodSignature))
+        {
+            return false;
+        }
+
+        MethodSignature otherSignature = (MethodSignature) other;
+        return hash == otherSignature.hash &&
+               Objects.equals(name, otherSignature.name) &&
+               Arrays.equals(parameterTypes, otherSignature.parameterTypes);
+    }
+
+    @Override
+    public int hashCode()
+    {
+        return hash;
+    }
+
+    @Override
+    public String toString()
+    {
+        if ( parameterTypes == null)
+        {
+            return name + "(...)";
+        }
+
+        StringBuilder builder = new StringBuilder(name).append('(');
+        for ( int i=0; i<parameterTypes.length; i++)
+        {
+            builder.append(i == 0 ? "" : ", ").append(parameterTypes[i] == null ? "?" : parameterTypes[i]);
+        }
+        return builder.append(')').toString();
+    }
+}
@@ -0,0 +1,113 @@
+package edu.ttu.erikpeterson.cs5381.parser.block;
+
+/**
+ * A read-only window onto part of a file's contents. Nothing is copied until toString() is called,
+ * so any number of slices can share one file's text.
+ */
+public final class SourceSlice implements CharSequence {
+
+    private final String source;
+    private final int start;
+    private final int end;
+
+    /**
+     * Constructor
+     *
+     * @param source Full text this slice looks into
+     * @param start First position of the slice
+     * @param end Position just after the end of the slice
+     */
+    public SourceSlice(String source, int start, int end)
+    {
+        if ( start < 0 || end > source.length() || start > end)
+        {
+            throw new IndexOutOfBoundsException("Slice " + start + " to " + end + " doesn't fit in " + source.length() + " characters");
+        }
+        this.source = source;
+        this.start = start;
+        this.end = end;
+    }
+
+    @Override
+    public int length() {
+        return end - start;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if ( index < 0 || index >= length())
+        {
+            throw new IndexOutOfBoundsException("Index " + index + " is outside a slice of length " + length());
+        }
+        return source.charAt(start + index);
+    }
+
+    @Override
+    public SourceSlice subSequence(int subStart, int subEnd) {
+        if ( subStart < 0 || subEnd > length() || subStart > subEnd)
+        {
+            throw new IndexOutOfBoundsException("Sub-slice " + subStart + " to " + subEnd + " doesn't fit in a slice of length " + length());
+        }
+        return new SourceSlice(source, start + subStart, start + subEnd);
+    }
+
+    /**
+     * Find some text in this slice without copying it out
+     *
+     * @param text Text to find
+     * @return Index of the text in this slice, or -1 if it isn't here
+     */
+    public int indexOf(String text)
+    {
+        int lastStart = end - text.length();
+        for ( int position=start; position<=lastStart; position++)
+        {
+            if ( source.regionMatches(position, text, 0, text.length()))
+            {
+                return position - start;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @param text Text to find
+     * @return True if the text is in this slice
+     */
+    public boolean contains(String text)
+    {
+        return indexOf(text) >= 0;
+    }
+
+    /**
+     * @param text Text to look for
+     * @return True if this slice starts with the text
+     */
+    public boolean startsWith(String text)
+    {
+        return text.length() <= length() && source.regionMatches(start, text, 0, text.length());
+    }
+
+    /**
+     * @return This slice without leading or trailing whitespace (same rules as String.trim())
+     */
+    public SourceSlice trim()
+    {
+        int trimmedStart = start;
+        int trimmedEnd = end;
+        while ( trimmedStart < trimmedEnd && source.charAt(trimmedStart) <= ' ')
+        {
+            trimmedStart++;
+        }
+        while ( trimmedEnd > trimmedStart && source.charAt(trimmedEnd - 1) <= ' ')
+        {
+            trimmedEnd--;
+        }
+        return trimmedStart == start && trimmedEnd == end ? this : new SourceSlice(source, trimmedStart, trimmedEnd);
+    }
+
+    @Override
+    public String toString() {
+        return source.substring(start, end);
+    }
+}
@@ -0,0 +1,126 @@
+package edu.ttu.erikpeterson.cs5381.parser.block;
+
+import java.util.Arrays;
+
+/**
+ * Where the statements are in some code, found in one pass. A statement ends just after each ';', '{' or '}',
+ * the same way the walker has always split methods up. Anything after the last of those isn't a statement
+ * (see {@link #getRemainderStart()}).
+ *
+ * Only the end positions are kept, in an int[], and statements are handed out as {@link SourceSlice}s of
+ * the original text, so nothing gets copied.
+ */
+public final class StatementIndex {
+
+    private final String text;
+    private final int start;
+    private final int end;
+    // Position just after each statement's ';', '{' or '}'
+    private final int[] ends;
+    private final int size;
+
+    /**
+     * Index all of some text
+     *
+     * @param text Text to index
+     */
+    public StatementIndex(String text)
+    {
+        this(text, 0, text.length());
+    }
+
+    /**
+     * Index part of some text
+     *
+     * @param text Text to index
+     * @param start Where to start
+     * @param end Where to stop (exclusive)
+     */
+    public StatementIndex(String text, int start, int end)
+    {
+        if ( start < 0 || end > text.length() || start > end)
+        {
+            throw new IndexOutOfBoundsException("Range " + start + " to " + end + " doesn't fit in " + text.length() + " characters");
+        }
+        this.text = text;
+        this.start = start;
+        this.end = end;
+
+        int[] found = new int[Math.max((end - start) / 32, 8)];
+        int count = 0;
+        for ( int position=start; position<end; position++)
+        {
+            char current = text.charAt(position);
+            if ( current == ';' || current == '{' || current == '}')
+            {
+                if ( count == found.length)
+                {
+                    found = Arrays.copyOf(found, count * 2);
+                }
+                found[count++] = position + 1;
+            }
+        }
+        ends = found;
+        size = count;
+    }
+
+    /**
+     * @return The text that was indexed (statement positions are in this)
+     */
+    public String getText() { return text; }
+
+    /**
+     * @return Number of statements
+     */
+    public int size() { return size; }
+
+    /**
+     * @param statement Which statement
+     * @return Position of its first character in the text
+     */
+    public int getStart(int statement)
+    {
+        checkStatement(statement);
+        return statement == 0 ? start : ends[statement - 1];
+    }
+
+    /**
+     * @param statement Which statement
+     * @return Position just after its ';', '{' or '}'
+     */
+    public int getEnd(int statement)
+    {
+        checkStatement(statement);
+        return ends[statement];
+    }
+
+    /**
+     * @param statement Which statement
+     * @return The statement, including its ';', '{' or '}'
+     */
+    public SourceSlice getStatement(int statement)
+    {
+        return new SourceSlice(text, getStart(statement), getEnd(statement));
+    }
+
+    /**
+     * @return Where the text after the last statement starts (the end of the range if there isn't any)
+     */
+    public int getRemainderStart()
+    {
+        return size == 0 ? start : ends[size - 1];
+    }
+
+    /**
+     * @return The end of the range that was indexed
+     */
+    public int getRangeEnd() { return end; }
+
+    private void checkStatement(int statement)
+    {
+        if ( statement < 0 || statement >= size)
+        {
+            throw new IndexOutOfBoundsException("Statement " + statement + ", size " + size);
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package edu.ttu.erikpeterson.cs5381.parser.block;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Index of every class and method we parsed, so a call can be matched to its method without scanning
+ * all the classes. Build it once all the files are parsed.
+ *
+ * When two classes share a name, the first one found wins. Overloads are told apart by their
+ * {@link MethodSignature}: the number of arguments, then whatever argument types the call site gives away.
+ *
+ * Calls are matched the way Java dispatches them ({@link #getTargets}): the method the type has or
+ * inherits, plus every override below it. That list is worked out once per call signature and reused.
+ */
+public class SymbolIndex {
+
+    private final List<CodeBlock> codeBlocks;
+    private final Map<String, ClassBlock> classes = new HashMap<>();
+    private final LockSymbolTable lockTable = new LockSymbolTable();
+    private final TypeHierarchy typeHierarchy;
+    // Type -> call signature -> every method a call could end up in
+    private final Map<String, Map<MethodSignature, List<MethodBlock>>> dispatchCache = new ConcurrentHashMap<>();
+
+    /**
+     * Constructor
+     *
+     * @param codeBlocks All the classes we know about (as returned by the parser)
+     */
+    public SymbolIndex(List<CodeBlock> codeBlocks)
+    {
+        this.codeBlocks = codeBlocks;
+        for ( CodeBlock codeBlock : codeBlocks)
+        {
+            if ( codeBlock instanceof ClassBlock && codeBlock.getName() != null)
+            {
+                classes.putIfAbsent(codeBlock.getName(), (ClassBlock) codeBlock);
+            }
+        }
+
+        typeHierarchy = new TypeHierarchy(classes);
+    }
+
+    /**
+     * @return The classes this index was built from
+     */
+    public List<CodeBlock> getCodeBlocks()
+    {
+        return codeBlocks;
+    }
+
+    /**
+     * @return Ids for the locks found by walks against this index
+     */
+    public LockSymbolTable getLockTable()
+    {
+        return lockTable;
+    }
+
+    /**
+     * @return Who extends or implements whom, among the classes in this index
+     */
+    public TypeHierarchy getTypeHierarchy()
+    {
+        return typeHierarchy;
+    }
+
+    /**
+     * @param className Class name
+     * @return The class with that name, or null if we don't have it
+     */
+    public ClassBlock getClassBlock(String className)
+    {
+        return classes.get(className);
+    }
+
+    /**
+     * Find a method by name, ignoring overloads
+     *
+     * @param className Class the method is in
+     * @param methodName Method name
+     * @return The method, or null if we don't have it
+     */
+    public MethodBlock getMethod(String className, String methodName)
+    {
+        ClassBlock classBlock = classes.get(className);
+        return classBlock == null ? null : classBlock.getMethodBlock(methodName);
+    }
+
+    /**
+     * Find a method, preferring the overload that takes the given number of arguments
+     *
+     * @param className Class the method is in
+     * @param methodName Method name
+     * @param arity Number of arguments in the call (or -1 if we don't know)
+     * @return The method, or null if we don't have it
+     */
+    public MethodBlock getMethod(String className, String methodName, int arity)
+    {
+        return getMethod(className, MethodSignature.forCall(methodName, arity));
+    }
+
+    /**
+     * Find the overload a call picks out (see {@link ClassBlock#getMethodBlock(MethodSignature)})
+     *
+     * @param className Class the method is in
+     * @param call The call's signature
+     * @return The method, or null if we don't have it
+     */
+    public MethodBlock getMethod(String className, MethodSignature call)
+    {
+        ClassBlock classBlock = classes.get(className);
+        return classBlock == null ? null : classBlock.getMethodBlock(call);
+    }
+
+    /**
+     * @param className Type the method is called on
+     * @param methodName Method name
+     * @param arity Number of arguments in the call (or -1 if we don't know)
+     * @return See {@link #getTargets(String, MethodSignature)}
+     */
+    public List<MethodBlock> getTargets(String className, String methodName, int arity)
+    {
+        return getTargets(className, MethodSignature.forCall(methodName, arity));
+    }
+
+    /**
+     * Find every method a call could run. A call through a type runs the method that type has (or the
+     * nearest one it inherits), or any override of it in a subtype, so all of them are returned. Inherited
+     * methods and overrides have to take the same number of arguments as the call. If the type has no such
+     * method at all, the classes it's nested in are tried, as a call in an inner class can go to its outer
+     * class.
+     *
+     * @param className Type the method is called on
+     * @param call The call's signature
+     * @return The methods, the one the type itself would run first (empty if none of them are ours)
+     */
+    public List<MethodBlock> getTargets(String className, MethodSignature call)
+    {
+        Map<MethodSignature, List<MethodBlock>> classTargets = dispatchCache.get(className);
+        if ( classTargets == null)
+        {
+            dispatchCache.putIfAbsent(className, new ConcurrentHashMap<>());
+            classTargets = dispatchCache.get(className);
+        }
+
+        List<MethodBlock> targets = classTargets.get(call);
+        if ( targets == null)
+        {
+            targets = findTargets(className, call);
+            classTargets.putIfAbsent(call, targets);
+        }
+        return targets;
+    }
+
+    private List<MethodBlock> findTargets(String className, MethodSignature call)
+    {
+        List<MethodBlock> targets = new ArrayList<>();
+        MethodBlock inherited = findInherited(className, call);
+        if ( inherited != null)
+        {
+            targets.add(inherited);
+        }
+        for ( String subType : typeHierarchy.getAllSubTypes(className))
+        {
+            MethodBlock override = getOverload(subType, call);
+            if ( override != null && !targets.contains(override))
+            {
+                targets.add(override);
+            }
+        }
+
+        if ( targets.isEmpty())
+        {
+            for ( String outerClass : typeHierarchy.getEnclosingClasses(className))
+            {
+                inherited = findInherited(outerClass, call);
+                if ( inherited != null)
+                {
+                    targets.add(inherited);
+                    break;
+                }
+            }
+        }
+
+        return targets.isEmpty() ? Collections.emptyList() : Collections.unmodifiableList(targets);
+    }
+
+    /**
+     * @return The method in the class, or the nearest one it inherits, or null if there isn't one. Only the
+     *         class itself can match by name alone; what it inherits has to take the same number of arguments.
+     */
+    private MethodBlock findInherited(String className, MethodSignature call)
+    {
+        MethodBlock methodBlock = getMethod(className, call);
+        List<String> types = typeHierarchy.getSelfAndSuperTypes(className);
+        for ( int i=1; methodBlock == null && i<types.size(); i++)
+        {
+            methodBlock = getOverload(types.get(i), call);
+        }
+        return methodBlock;
+    }
+
+    private MethodBlock getOverload(String className, MethodSignature call)
+    {
+        ClassBlock classBlock = classes.get(className);
+        return classBlock == null ? null : classBlock.getOverload(call);
+    }
+}
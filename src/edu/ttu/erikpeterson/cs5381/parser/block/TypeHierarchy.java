@@ -0,0 +1,182 @@
+package edu.ttu.erikpeterson.cs5381.parser.block;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Who extends or implements whom, for every class we parsed, worked out once up front. Types are known by
+ * their simple names, the same as everywhere else, so a supertype we didn't parse (e.g. Thread) is still
+ * listed, we just don't know anything about it.
+ *
+ * Inner classes also remember the class they're in, since a call in an inner class can go to a method
+ * of the class around it.
+ */
+public final class TypeHierarchy {
+
+    private final Map<String, ClassBlock> classes;
+    private final Map<String, List<String>> superTypes = new HashMap<>();
+    private final Map<String, List<String>> subTypes = new HashMap<>();
+    private final Map<String, String> enclosingClasses = new HashMap<>();
+    // Every subtype, however far down, worked out the first time it's asked for
+    private final Map<String, List<String>> allSubTypes = new ConcurrentHashMap<>();
+
+    /**
+     * Constructor
+     *
+     * @param classes Every class (and interface) by name
+     */
+    TypeHierarchy(Map<String, ClassBlock> classes)
+    {
+        this.classes = classes;
+        for ( Map.Entry<String, ClassBlock> entry : classes.entrySet())
+        {
+            String className = entry.getKey();
+            ClassBlock classBlock = entry.getValue();
+
+            List<String> classSuperTypes = classBlock.getSuperTypeNames();
+            superTypes.put(className, classSuperTypes);
+            for ( String superType : classSuperTypes)
+            {
+                subTypes.computeIfAbsent(superType, key -> new ArrayList<>()).add(className);
+            }
+
+            CodeBlock parent = classBlock.getParent();
+            while ( parent != null && !(parent instanceof ClassBlock))
+            {
+                parent = parent.getParent();
+            }
+            if ( parent != null && parent.getName() != null)
+            {
+                enclosingClasses.put(className, parent.getName());
+            }
+        }
+    }
+
+    /**
+     * @param className Class or interface name
+     * @return What it directly extends or implements (empty if it's not one of ours)
+     */
+    public List<String> getSuperTypes(String className)
+    {
+        List<String> found = superTypes.get(className);
+        return found == null ? Collections.emptyList() : found;
+    }
+
+    /**
+     * @param className Class or interface name
+     * @return Our classes and interfaces that directly extend or implement it
+     */
+    public List<String> getSubTypes(String className)
+    {
+        List<String> found = subTypes.get(className);
+        return found == null ? Collections.emptyList() : Collections.unmodifiableList(found);
+    }
+
+    /**
+     * @param className Class or interface name
+     * @return Every class and interface below it, nearest first
+     */
+    public List<String> getAllSubTypes(String className)
+    {
+        List<String> found = allSubTypes.get(className);
+        if ( found == null)
+        {
+            found = Collections.unmodifiableList(findAllSubTypes(className));
+            allSubTypes.putIfAbsent(className, found);
+        }
+        return found;
+    }
+
+    /**
+     * @param typeName Interface (or class) name
+     * @return Every class (not interface) below it, nearest first
+     */
+    public List<String> getImplementers(String typeName)
+    {
+        List<String> implementers = new ArrayList<>();
+        for ( String subType : getAllSubTypes(typeName))
+        {
+            if ( !classes.get(subType).isInterface())
+            {
+                implementers.add(subType);
+            }
+        }
+        return implementers;
+    }
+
+    /**
+     * @param className Class name
+     * @return The class it's declared in, or null if it's a top level class
+     */
+    public String getEnclosingClass(String className)
+    {
+        return enclosingClasses.get(className);
+    }
+
+    private List<String> findAllSubTypes(String className)
+    {
+        List<String> found = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+        seen.add(className);
+        ArrayDeque<String> toVisit = new ArrayDeque<>();
+        toVisit.add(className);
+
+        while ( !toVisit.isEmpty())
+        {
+            for ( String subType : getSubTypes(toVisit.poll()))
+            {
+                // Hierarchies can't loop in real code, but nothing stops a broken file from claiming one
+                if ( seen.add(subType))
+                {
+                    found.add(subType);
+                    toVisit.add(subType);
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * @param className Class or interface name
+     * @return It and everything above it that we know about, nearest first
+     */
+    List<String> getSelfAndSuperTypes(String className)
+    {
+        List<String> found = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+        ArrayDeque<String> toVisit = new ArrayDeque<>();
+        toVisit.add(className);
+
+        while ( !toVisit.isEmpty())
+        {
+            String type = toVisit.poll();
+            if ( seen.add(type))
+            {
+                found.add(type);
+                toVisit.addAll(getSuperTypes(type));
+            }
+        }
+        return found;
+    }
+
+    /**
+     * @param className Class name
+     * @return The classes around it, innermost first (empty for a top level class)
+     */
+    List<String> getEnclosingClasses(String className)
+    {
+        List<String> found = new ArrayList<>();
+        for ( String outer = getEnclosingClass(className); outer != null && !found.contains(outer); outer = getEnclosingClass(outer))
+        {
+            found.add(outer);
+        }
+        return found;
+    }
+}
@@ -0,0 +1,197 @@
+package edu.ttu.erikpeterson.cs5381.parser.block;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+/**
+ * Everything that belongs to a single walk of a thread: where its locks go and which methods it's in the
+ * middle of. Keeping this out of the (shared) code blocks lets several threads be walked at once.
+ *
+ * The methods being walked are the current call path only, so a method can be walked again from somewhere
+ * else once it's done; it just can't call back into itself. Calls deeper than the maximum depth are skipped
+ * and counted. Since every path is walked in full, a call graph that fans out can still take exponential
+ * time well inside the depth limit, so each walk also has a budget of methods it can enter; calls past that
+ * are skipped and counted the same way.
+ *
+ * The locks found either go into a full list of events, or are boiled down as they're found into the sets
+ * of locks held at once ({@link HeldLockSets}), which only grows with the number of distinct sets.
+ */
+public class WalkContext {
+
+    /**
+     * How deep calls are followed unless told otherwise. The thread start itself is depth 1.
+     */
+    public static final int DEFAULT_MAX_DEPTH = 64;
+
+    /**
+     * How many methods a walk can enter (counting every time a method is walked) unless told otherwise
+     */
+    public static final int DEFAULT_MAX_METHODS = 100_000;
+
+    private final SymbolIndex symbolIndex;
+    private final LongArrayList lockEvents;
+    private final HeldLockSets heldLockSets;
+    private final int maxDepth;
+    private final int maxMethods;
+    private final Set<MethodBlock> methodsBeingWalked = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    private int depthReached;
+    private int methodsWalked;
+    private int pathsTruncated;
+    private int recursiveCallsSkipped;
+
+    /**
+     * Constructor
+     *
+     * @param symbolIndex Index of all the classes we know about
+     * @param lockEvents Where to put the locks and unlocks we find (as packed events, see {@link LockSymbolTable})
+     */
+    public WalkContext(SymbolIndex symbolIndex, LongArrayList lockEvents)
+    {
+        this(symbolIndex, lockEvents, DEFAULT_MAX_DEPTH);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param symbolIndex Index of all the classes we know about
+     * @param lockEvents Where to put the locks and unlocks we find (as packed events, see {@link LockSymbolTable})
+     * @param maxDepth How many methods deep to follow calls (at least 1)
+     */
+    public WalkContext(SymbolIndex symbolIndex, LongArrayList lockEvents, int maxDepth)
+    {
+        this(symbolIndex, lockEvents, null, maxDepth, DEFAULT_MAX_METHODS);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param symbolIndex Index of all the classes we know about
+     * @param lockEvents Where to put the locks and unlocks we find (as packed events, see {@link LockSymbolTable})
+     * @param maxDepth How many methods deep to follow calls (at least 1)
+     * @param maxMethods How many methods the walk can enter in all (at least 1)
+     */
+    public WalkContext(SymbolIndex symbolIndex, LongArrayList lockEvents, int maxDepth, int maxMethods)
+    {
+        this(symbolIndex, lockEvents, null, maxDepth, maxMethods);
+    }
+
+    /**
+     * Constructor for a walk that only keeps the sets of locks held at once
+     *
+     * @param symbolIndex Index of all the classes we know about
+     * @param heldLockSets Where to fold the locks and unlocks we find
+     * @param maxDepth How many methods deep to follow calls (at least 1)
+     * @param maxMethods How many methods the walk can enter in all (at least 1)
+     */
+    public WalkContext(SymbolIndex symbolIndex, HeldLockSets heldLockSets, int maxDepth, int maxMethods)
+    {
+        this(symbolIndex, null, heldLockSets, maxDepth, maxMethods);
+    }
+
+    private WalkContext(SymbolIndex symbolIndex, LongArrayList lockEvents, HeldLockSets heldLockSets, int maxDepth, int maxMethods)
+    {
+        if ( maxDepth < 1)
+        {
+            throw new IllegalArgumentException("Maximum call depth must be at least 1, not " + maxDepth);
+        }
+        if ( maxMethods < 1)
+        {
+            throw new IllegalArgumentException("Maximum methods walked must be at least 1, not " + maxMethods);
+        }
+        this.symbolIndex = symbolIndex;
+        this.lockEvents = lockEvents;
+        this.heldLockSets = heldLockSets;
+        this.maxDepth = maxDepth;
+        this.maxMethods = maxMethods;
+    }
+
+    public SymbolIndex getSymbolIndex() { return symbolIndex; }
+
+    /**
+     * @return Every lock event found, or null if this walk only keeps held lock sets
+     */
+    public LongArrayList getLockEvents() { return lockEvents; }
+
+    /**
+     * @return The held lock sets, or null if this walk keeps every event
+     */
+    public HeldLockSets getHeldLockSets() { return heldLockSets; }
+
+    public int getMaxDepth() { return maxDepth; }
+
+    public int getMaxMethods() { return maxMethods; }
+
+    /**
+     * @return The deepest the walk went (the thread start is depth 1)
+     */
+    public int getDepthReached() { return depthReached; }
+
+    /**
+     * @return How many methods were entered (a method walked twice counts twice)
+     */
+    public int getMethodsWalked() { return methodsWalked; }
+
+    /**
+     * @return How many calls weren't followed because they were past the maximum depth, or the walk had
+     *         already entered as many methods as it was allowed to
+     */
+    public int getPathsTruncated() { return pathsTruncated; }
+
+    /**
+     * @return How many calls weren't followed because the method was already on the call path
+     */
+    public int getRecursiveCallsSkipped() { return recursiveCallsSkipped; }
+
+    /**
+     * @param event The next lock or unlock found (packed, see {@link LockSymbolTable})
+     */
+    void addLockEvent(long event)
+    {
+        if ( heldLockSets != null)
+        {
+            heldLockSets.add(event);
+        }
+        else
+        {
+            lockEvents.add(event);
+        }
+    }
+
+    /**
+     * Note that we're starting to walk a method
+     *
+     * @param methodBlock The method
+     * @param depth How deep the method would be (the thread start is depth 1)
+     * @return False if the method shouldn't be walked: it's already on the call path (i.e. this would be
+     *         recursion), it's past the maximum depth, or the walk is out of methods
+     */
+    boolean enterMethod(MethodBlock methodBlock, int depth)
+    {
+        if ( depth > maxDepth || methodsWalked >= maxMethods)
+        {
+            pathsTruncated++;
+            return false;
+        }
+        if ( !methodsBeingWalked.add(methodBlock))
+        {
+            recursiveCallsSkipped++;
+            return false;
+        }
+
+        depthReached = Math.max(depthReached, depth);
+        methodsWalked++;
+        return true;
+    }
+
+    /**
+     * Note that we're done walking a method
+     *
+     * @param methodBlock The method
+     */
+    void exitMethod(MethodBlock methodBlock)
+    {
+        methodsBeingWalked.remove(methodBlock);
+    }
+}
@@ -1,31 +1,35 @@
 package edu.ttu.erikpeterson.cs5381.parser.lockCheckers;
 
 import edu.ttu.erikpeterson.cs5381.parser.block.LockInfo;
-import edu.ttu.erikpeterson.cs5381.parser.block.MethodBlock;
 
 import java.util.List;
-import java.util.Map;
 
+/**
+ * Finds one kind of lock in a method's statements. Finders are shared by every method (and every thread),
+ * so anything they need to remember goes in the {@link LockFinderState} they're handed.
+ */
 public abstract class LockFinder {
 
-    final MethodBlock methodBlock;
-    final Map<String, String> variables;
+    /**
+     * Look for locks and unlocks in a statement
+     *
+     * @param statement Statement to check
+     * @param state The method we're in and what's been seen in it so far
+     * @param lockInfoList Where to put the locks and unlocks we find
+     */
+    public abstract void checkStatement(CharSequence statement, LockFinderState state, List<LockInfo> lockInfoList);
 
-    LockFinder(MethodBlock methodBlock)
+    /**
+     * Lets the caller skip statements this finder can't match
+     *
+     * @param keywords The statement's keywords, from {@link LockKeywordScanner#scan}
+     * @return False if {@link #checkStatement} would do nothing with the statement
+     */
+    public boolean mightMatch(int keywords)
     {
-        this.methodBlock = methodBlock;
-        if ( methodBlock != null)
-        {
-            this.variables = methodBlock.getVariables();
-        }
-        else
-        {
-            this.variables = null;
-        }
+        return true;
     }
 
-    public abstract void checkStatement(String statement, List<LockInfo> lockInfoList);
-
     /**
      * Gives a lock finder the chance to validate a "deadlock"
      * @param first First lock
@@ -1,20 +1,22 @@
 package edu.ttu.erikpeterson.cs5381.parser.lockCheckers;
 
-import edu.ttu.erikpeterson.cs5381.parser.block.MethodBlock;
-
-import java.util.LinkedList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 public class LockFinderFactory {
 
-    public static List<LockFinder> buildAllLockFinders(MethodBlock methodBlock)
-    {
-        List<LockFinder> lockFinders = new LinkedList<>();
-
-        lockFinders.add(new SynchronizedLockFinder(methodBlock));
-        lockFinders.add(new ReentrantLockFinder(methodBlock));
-        lockFinders.add(new ReadWriteLockFinder(methodBlock));
+    // The finders keep no state of their own, so everyone can share these
+    private static final List<LockFinder> ALL_LOCK_FINDERS = Collections.unmodifiableList(Arrays.asList(
+            new SynchronizedLockFinder(),
+            new ReentrantLockFinder(),
+            new ReadWriteLockFinder()));
 
-        return lockFinders;
+    /**
+     * @return Every lock finder. The list can't be changed and is the same every time.
+     */
+    public static List<LockFinder> getAllLockFinders()
+    {
+        return ALL_LOCK_FINDERS;
     }
 }
@@ -0,0 +1,67 @@
+package edu.ttu.erikpeterson.cs5381.parser.lockCheckers;
+
+import edu.ttu.erikpeterson.cs5381.parser.block.LockInfo;
+import edu.ttu.erikpeterson.cs5381.parser.block.MethodBlock;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * What the lock finders need to remember while they go through one method's statements. The finders
+ * themselves are shared, so all of this lives here instead, one per method being scanned.
+ */
+public class LockFinderState {
+
+    private final MethodBlock methodBlock;
+    private final Map<String, String> variables;
+
+    // For synchronized blocks: how many '{' deep we are, and the locks to release when we get back out
+    private int currentOpenBraceLevel;
+    private Map<Integer, LockInfo> synchronizedBlocks;
+
+    /**
+     * Constructor
+     *
+     * @param methodBlock Method whose statements are being scanned
+     */
+    public LockFinderState(MethodBlock methodBlock)
+    {
+        this.methodBlock = methodBlock;
+        this.variables = methodBlock.getVariables();
+    }
+
+    public MethodBlock getMethodBlock() { return methodBlock; }
+
+    public Map<String, String> getVariables() { return variables; }
+
+    void openBrace()
+    {
+        currentOpenBraceLevel++;
+    }
+
+    void closeBrace()
+    {
+        currentOpenBraceLevel--;
+    }
+
+    /**
+     * Remember a synchronized block opened at the current level
+     */
+    void addSynchronizedBlock(LockInfo lockInfo)
+    {
+        // Most methods never get here, so don't make the map until it's needed
+        if ( synchronizedBlocks == null)
+        {
+            synchronizedBlocks = new HashMap<>();
+        }
+        synchronizedBlocks.put(currentOpenBraceLevel, lockInfo);
+    }
+
+    /**
+     * @return The lock of the synchronized block opened at the current level, or null if there isn't one
+     */
+    LockInfo removeSynchronizedBlock()
+    {
+        return synchronizedBlocks == null ? null : synchronizedBlocks.remove(currentOpenBraceLevel);
+    }
+}
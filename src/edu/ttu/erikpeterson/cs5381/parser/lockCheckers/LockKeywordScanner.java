@@ -0,0 +1,129 @@
+package edu.ttu.erikpeterson.cs5381.parser.lockCheckers;
+
+/**
+ * One quick pass over a statement to see which lock keywords it has. Most statements have none, and
+ * then none of the lock finders' regexes need to run.
+ *
+ * The same pass also spots the keywords that mean a method body can start a thread or declare a class, so
+ * the parser can tell which bodies it can leave until later.
+ */
+public final class LockKeywordScanner {
+
+    /** The statement has a synchronized keyword */
+    public static final int SYNCHRONIZED = 1;
+    /** The statement has a lock(), unlock() or tryLock() */
+    public static final int LOCK = 1 << 1;
+    /** The statement has a readLock() or writeLock() */
+    public static final int READ_WRITE_LOCK = 1 << 2;
+    /** The statement has a '{' or '}' */
+    public static final int BRACE = 1 << 3;
+    /** The statement mentions Thread */
+    public static final int THREAD = 1 << 4;
+    /** The statement has a submit() */
+    public static final int SUBMIT = 1 << 5;
+    /** The statement has a class keyword */
+    public static final int CLASS = 1 << 6;
+
+    /** Every keyword that has to do with locks */
+    public static final int LOCK_KEYWORDS = SYNCHRONIZED | LOCK | READ_WRITE_LOCK;
+
+    private LockKeywordScanner()
+    {
+    }
+
+    /**
+     * Scan a statement for lock keywords. Only whole identifiers count, so "clock()" isn't a lock.
+     *
+     * @param statement Statement to scan
+     * @return The keywords found, as a combination of this class's flags
+     */
+    public static int scan(CharSequence statement)
+    {
+        return scan(statement, 0, statement.length());
+    }
+
+    /**
+     * Scan part of some text for keywords
+     *
+     * @param text Text to scan
+     * @param start Where to start
+     * @param end Where to stop (exclusive)
+     * @return The keywords found, as a combination of this class's flags
+     */
+    public static int scan(CharSequence text, int start, int end)
+    {
+        int keywords = 0;
+        int position = start;
+
+        while ( position < end)
+        {
+            char current = text.charAt(position);
+            if ( current == '{' || current == '}')
+            {
+                keywords |= BRACE;
+                position++;
+            }
+            else if ( Character.isJavaIdentifierStart(current))
+            {
+                int tokenStart = position;
+                do
+                {
+                    position++;
+                } while ( position < end && Character.isJavaIdentifierPart(text.charAt(position)));
+                keywords |= classifyToken(text, tokenStart, position - tokenStart);
+            }
+            else
+            {
+                position++;
+            }
+        }
+
+        return keywords;
+    }
+
+    private static int classifyToken(CharSequence statement, int start, int length)
+    {
+        switch ( length)
+        {
+            case 4:
+                return isToken(statement, start, "lock") ? LOCK : 0;
+            case 5:
+                return isToken(statement, start, "class") ? CLASS : 0;
+            case 6:
+                if ( isToken(statement, start, "unlock"))
+                {
+                    return LOCK;
+                }
+                if ( isToken(statement, start, "Thread"))
+                {
+                    return THREAD;
+                }
+                return isToken(statement, start, "submit") ? SUBMIT : 0;
+            case 7:
+                return isToken(statement, start, "tryLock") ? LOCK : 0;
+            case 8:
+                return isToken(statement, start, "readLock") ? READ_WRITE_LOCK : 0;
+            case 9:
+                return isToken(statement, start, "writeLock") ? READ_WRITE_LOCK : 0;
+            case 12:
+                return isToken(statement, start, "synchronized") ? SYNCHRONIZED : 0;
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * @return True if the text at start is the keyword (the caller already checked the length)
+     */
+    private static boolean isToken(CharSequence text, int start, String keyword)
+    {
+        for ( int i=0; i<keyword.length(); i++)
+        {
+            if ( text.charAt(start + i) != keyword.charAt(i))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -3,9 +3,8 @@ package edu.ttu.erikpeterson.cs5381.parser.lockCheckers;
 import edu.ttu.erikpeterson.cs5381.parser.block.LockInfo;
 import edu.ttu.erikpeterson.cs5381.parser.block.MethodBlock;
 
-import java.util.ArrayList;
-import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -32,16 +31,20 @@ public class ReadWriteLockFinder extends LockFinder {
 
     /**
      * Constructor
-     *
-     * @param methodBlock Method we're looking at
      */
-    ReadWriteLockFinder(MethodBlock methodBlock)
+    ReadWriteLockFinder()
     {
-        super(methodBlock);
     }
 
     @Override
-    public void checkStatement(String statement, List<LockInfo> lockInfoList) {
+    public boolean mightMatch(int keywords)
+    {
+        int needed = LockKeywordScanner.LOCK | LockKeywordScanner.READ_WRITE_LOCK;
+        return (keywords & needed) == needed;
+    }
+
+    @Override
+    public void checkStatement(CharSequence statement, LockFinderState state, List<LockInfo> lockInfoList) {
 
         Matcher readLockMatcher = READ_LOCK_MATCHER.matcher(statement);
         Matcher writeLockMatcher = WRITE_LOCK_MATCHER.matcher(statement);
@@ -77,8 +80,10 @@ public class ReadWriteLockFinder extends LockFinder {
             return;
         }
 
+        Map<String, String> variables = state.getVariables();
         if ( variables.containsKey(variable))
         {
+            MethodBlock methodBlock = state.getMethodBlock();
             String type = variables.get(variable);
             // Handle both the interface "ReadWriteLock" and the known implementation "ReentrantReadWriteLock"
             if ( type.equals("ReadWriteLock") ||
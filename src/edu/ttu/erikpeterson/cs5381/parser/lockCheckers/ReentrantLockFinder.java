@@ -1,9 +1,9 @@
 package edu.ttu.erikpeterson.cs5381.parser.lockCheckers;
 
 import edu.ttu.erikpeterson.cs5381.parser.block.LockInfo;
-import edu.ttu.erikpeterson.cs5381.parser.block.MethodBlock;
 
 import java.util.List;
+import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -13,13 +13,18 @@ public class ReentrantLockFinder extends LockFinder {
     private static final Pattern LOCK_MATCHER = Pattern.compile("\\s*(\\w+)\\s*\\.\\s*lock\\s*\\(");
     private static final Pattern UNLOCK_MATCHER = Pattern.compile("\\s*(\\w+)\\s*\\.\\s*unlock\\s*\\(");
 
-    ReentrantLockFinder(MethodBlock methodBlock)
+    ReentrantLockFinder()
     {
-        super(methodBlock);
     }
 
     @Override
-    public void checkStatement(String statement, List<LockInfo> lockInfoList) {
+    public boolean mightMatch(int keywords)
+    {
+        return (keywords & LockKeywordScanner.LOCK) != 0;
+    }
+
+    @Override
+    public void checkStatement(CharSequence statement, LockFinderState state, List<LockInfo> lockInfoList) {
         Matcher trylockMatcher = TRYLOCK_MATCHER.matcher(statement);
         Matcher lockMatcher = LOCK_MATCHER.matcher(statement);
         Matcher unlockMatcher = UNLOCK_MATCHER.matcher(statement);
@@ -47,12 +52,13 @@ public class ReentrantLockFinder extends LockFinder {
             return;
         }
 
+        Map<String, String> variables = state.getVariables();
         if ( variables.containsKey(variable))
         {
             String type = variables.get(variable);
             if ( type.equals("ReentrantLock"))
             {
-                lockInfoList.add(new LockInfo(variable, type, methodBlock, lock));
+                lockInfoList.add(new LockInfo(variable, type, state.getMethodBlock(), lock));
             }
         }
     }
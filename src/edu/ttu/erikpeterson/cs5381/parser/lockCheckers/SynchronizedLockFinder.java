@@ -3,7 +3,6 @@ package edu.ttu.erikpeterson.cs5381.parser.lockCheckers;
 import edu.ttu.erikpeterson.cs5381.parser.block.LockInfo;
 import edu.ttu.erikpeterson.cs5381.parser.block.MethodBlock;
 
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.regex.Matcher;
@@ -13,17 +12,23 @@ public class SynchronizedLockFinder extends LockFinder {
 
     private static final Pattern SYNCHRONIZED_PATTERN = Pattern.compile("\\s*synchronized\\s*\\(\\s*(\\w+)\\s*\\)");
 
-    private int currentOpenParenLevel;
-    private Map<Integer, LockInfo> mapOfFoundSynchronizedBlocks = new HashMap<>();
+    SynchronizedLockFinder()
+    {
+    }
 
-    SynchronizedLockFinder(MethodBlock methodBlock)
+    @Override
+    public boolean mightMatch(int keywords)
     {
-        super(methodBlock);
+        // Has to see every brace to know when a synchronized block ends
+        return (keywords & (LockKeywordScanner.SYNCHRONIZED | LockKeywordScanner.BRACE)) != 0;
     }
 
     @Override
-    public void checkStatement(String statement, List<LockInfo> lockInfoList)
+    public void checkStatement(CharSequence statement, LockFinderState state, List<LockInfo> lockInfoList)
     {
+        MethodBlock methodBlock = state.getMethodBlock();
+        Map<String, String> variables = state.getVariables();
+
         Matcher synchronizedMatcher = SYNCHRONIZED_PATTERN.matcher(statement);
         if ( synchronizedMatcher.find())
         {
@@ -55,25 +60,37 @@ public class SynchronizedLockFinder extends LockFinder {
             LockInfo lockInfo = new LockInfo(variable, type, methodBlock, true);
 
             // When we find a '}' that gets us back to this level we'll mark this unlocked
-            mapOfFoundSynchronizedBlocks.put(currentOpenParenLevel, lockInfo);
+            state.addSynchronizedBlock(lockInfo);
             lockInfoList.add(lockInfo);
         }
 
         // Check to see if there's an '{' or '}' (there will be at most one of them
-        if ( statement.contains("{"))
+        if ( contains(statement, '{'))
         {
-            currentOpenParenLevel++;
+            state.openBrace();
         }
-        else if ( statement.contains("}"))
+        else if ( contains(statement, '}'))
         {
-            currentOpenParenLevel--;
+            state.closeBrace();
             // Check to see if we just closed a synchronized block
-            if ( mapOfFoundSynchronizedBlocks.containsKey(currentOpenParenLevel))
+            LockInfo lockJustUnlocked = state.removeSynchronizedBlock();
+            if ( lockJustUnlocked != null)
             {
-                LockInfo lockJustUnlocked = mapOfFoundSynchronizedBlocks.remove(currentOpenParenLevel);
                 lockInfoList.add(new LockInfo(lockJustUnlocked.getName(), lockJustUnlocked.getType(), methodBlock, false));
             }
         }
 
     }
+
+    private static boolean contains(CharSequence statement, char wanted)
+    {
+        for ( int i=0; i<statement.length(); i++)
+        {
+            if ( statement.charAt(i) == wanted)
+            {
+                return true;
+            }
+        }
+        return false;
+    }
 }
@@ -2,10 +2,12 @@ package edu.ttu.erikpeterson.cs5381.test;
 
 import edu.ttu.erikpeterson.cs5381.parser.block.ClassBlock;
 import edu.ttu.erikpeterson.cs5381.parser.block.CodeBlock;
+import edu.ttu.erikpeterson.cs5381.parser.BlockParsingException;
 import edu.ttu.erikpeterson.cs5381.parser.CodeBlockParser;
 import edu.ttu.erikpeterson.cs5381.parser.block.CodeBlockType;
 import edu.ttu.erikpeterson.cs5381.parser.CodeWalker;
 import edu.ttu.erikpeterson.cs5381.parser.block.MethodBlock;
+import edu.ttu.erikpeterson.cs5381.parser.block.StatementIndex;
 import org.junit.jupiter.api.Test;
 
 import java.io.File;
@@ -116,6 +118,109 @@ class CodeBlockParserTest {
             fail("Unable to parse directory " + testDirectory.getAbsolutePath() + ": " + e.getMessage());
         }
 
-        assertEquals(codeBlocks.size(), 5);
+        assertEquals(codeBlocks.size(), 17);
+    }
+
+    @Test
+    void parseAllFilesInParallel()
+    {
+        File testDirectory = new File(Util.TEST_CLASS_PATH);
+        List<CodeBlock> sequentialBlocks = null;
+        List<CodeBlock> parallelBlocks = null;
+        try
+        {
+            sequentialBlocks = CodeBlockParser.parsePath(testDirectory);
+            parallelBlocks = CodeBlockParser.parsePath(testDirectory, 4);
+        }
+        catch ( Exception e)
+        {
+            e.printStackTrace();
+            fail("Unable to parse directory " + testDirectory.getAbsolutePath() + ": " + e.getMessage());
+        }
+
+        // Same blocks, in the same order
+        assertEquals(sequentialBlocks.size(), parallelBlocks.size());
+        for ( int i=0; i<sequentialBlocks.size(); i++)
+        {
+            CodeBlock sequentialBlock = sequentialBlocks.get(i);
+            CodeBlock parallelBlock = parallelBlocks.get(i);
+            assertEquals(sequentialBlock.getName(), parallelBlock.getName());
+            assertEquals(sequentialBlock.getStartPosition(), parallelBlock.getStartPosition());
+            assertEquals(sequentialBlock.getEndPosition(), parallelBlock.getEndPosition());
+            assertEquals(sequentialBlock.getSubCodeBlocks().size(), parallelBlock.getSubCodeBlocks().size());
+        }
+    }
+
+    @Test
+    void removeCommentsAndLiterals()
+    {
+        String source = "/* first */ int a = 1; /* second */\n" +
+                        "String b = \"{ \\\" }\"; // trailing {\n" +
+                        "char c = '}'; char d = '\\'';\n" +
+                        "String e = \"\"\"\n  {text block}\n  \"\"\";\n";
+        String cleaned = CodeBlockParser.removeAllComments(source);
+
+        // Offsets and line breaks don't move
+        assertEquals(source.length(), cleaned.length());
+        assertEquals(source.indexOf('\n'), cleaned.indexOf('\n'));
+
+        // Code between comments is kept
+        assertTrue(cleaned.contains("int a = 1;"));
+        assertTrue(cleaned.contains("String b ="));
+        assertTrue(cleaned.contains("char d ="));
+
+        // Comments and literals (including any braces in them) are gone
+        assertTrue(!cleaned.contains("first"));
+        assertTrue(!cleaned.contains("second"));
+        assertTrue(!cleaned.contains("trailing"));
+        assertTrue(!cleaned.contains("text block"));
+        assertTrue(!cleaned.contains("{"));
+        assertTrue(!cleaned.contains("}"));
+        assertTrue(!cleaned.contains("'"));
+        assertTrue(!cleaned.contains("\""));
+    }
+
+    @Test
+    void statementIndexAndVariables() throws Exception
+    {
+        String code = " first(); while (x) { second(); } left over";
+        StatementIndex statementIndex = new StatementIndex(code);
+        assertEquals(4, statementIndex.size());
+        assertEquals(" first();", statementIndex.getStatement(0).toString());
+        assertEquals(" while (x) {", statementIndex.getStatement(1).toString());
+        assertEquals(" second();", statementIndex.getStatement(2).toString());
+        assertEquals(" }", statementIndex.getStatement(3).toString());
+        assertEquals(" left over", code.substring(statementIndex.getRemainderStart(), statementIndex.getRangeEnd()));
+
+        // A declaration without an assignment counts as a variable too
+        String source = "public class Declarations {\n" +
+                        "    public void method() {\n" +
+                        "        Object lockA;\n" +
+                        "        final String name = \"\";\n" +
+                        "        lockA = new Object();\n" +
+                        "        synchronized(lockA) {\n" +
+                        "            System.out.println(name);\n" +
+                        "        }\n" +
+                        "    }\n" +
+                        "}\n";
+        List<CodeBlock> codeBlocks = CodeBlockParser.parseContents(source);
+        MethodBlock method = ((ClassBlock) codeBlocks.get(0)).getMethodBlock("method");
+        Map<String, String> variables = method.getVariables();
+        assertEquals("Object", variables.get("lockA"));
+        assertEquals("String", variables.get("name"));
+        assertEquals(6, method.getStatementIndex().size());
+    }
+
+    @Test
+    void lazyBodiesRejectTheSameFiles()
+    {
+        // The array initializer's block isn't anything we know, and nothing in the method says to parse it up front
+        String source = "public class Unknown {\n" +
+                        "    public void method() {\n" +
+                        "        int[] values = new int[] { 1, 2 };\n" +
+                        "    }\n" +
+                        "}\n";
+        assertThrows(BlockParsingException.class, () -> CodeBlockParser.parseContents(source, false));
+        assertThrows(BlockParsingException.class, () -> CodeBlockParser.parseContents(source, true));
     }
 }
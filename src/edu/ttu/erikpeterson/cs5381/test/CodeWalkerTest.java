@@ -5,11 +5,24 @@ import edu.ttu.erikpeterson.cs5381.parser.block.ClassBlock;
 import edu.ttu.erikpeterson.cs5381.parser.block.CodeBlock;
 import edu.ttu.erikpeterson.cs5381.parser.CodeBlockParser;
 import edu.ttu.erikpeterson.cs5381.parser.CodeWalker;
+import edu.ttu.erikpeterson.cs5381.parser.Deadlock;
+import edu.ttu.erikpeterson.cs5381.parser.block.HeldLockSets;
+import edu.ttu.erikpeterson.cs5381.parser.block.LockInfo;
+import edu.ttu.erikpeterson.cs5381.parser.block.LockSummary;
+import edu.ttu.erikpeterson.cs5381.parser.block.LockSymbolTable;
+import edu.ttu.erikpeterson.cs5381.parser.block.LongArrayList;
 import edu.ttu.erikpeterson.cs5381.parser.block.MethodBlock;
+import edu.ttu.erikpeterson.cs5381.parser.block.MethodSignature;
+import edu.ttu.erikpeterson.cs5381.parser.block.SymbolIndex;
+import edu.ttu.erikpeterson.cs5381.parser.block.TypeHierarchy;
+import edu.ttu.erikpeterson.cs5381.parser.block.WalkContext;
 import org.junit.jupiter.api.Test;
 
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
@@ -96,6 +109,52 @@ class CodeWalkerTest {
 
     }
 
+    @Test
+    void parseLockCycleExample() throws FileNotFoundException, BlockParsingException {
+        List<CodeBlock> codeBlocks = CodeBlockParser.parse(new File(Util.TEST_CLASS_PATH + "/LockCycleExample.java"));
+
+        CodeWalker walker = new CodeWalker(codeBlocks);
+        assertEquals(3, walker.getThreadStarts().size());
+
+        walker.walkAllThreadStarts();
+
+        // No pair of locks is taken in opposite orders, so only the cycle through all three finds it
+        List<String> deadlocks = walker.findDeadlocks();
+        assertEquals(1, deadlocks.size());
+        assertTrue(deadlocks.get(0).contains("lock1"));
+        assertTrue(deadlocks.get(0).contains("lock2"));
+        assertTrue(deadlocks.get(0).contains("lock3"));
+        for ( String deadlockInfo : deadlocks)
+        {
+            System.out.println(deadlockInfo);
+        }
+    }
+
+    @Test
+    void streamDeadlockRecords() throws FileNotFoundException, BlockParsingException {
+        List<CodeBlock> codeBlocks = CodeBlockParser.parse(new File(Util.TEST_CLASS_PATH + "/SynchronizedDeadlock.java"));
+        CodeWalker walker = new CodeWalker(codeBlocks);
+        walker.walkAllThreadStarts();
+
+        List<Deadlock> deadlocks = new ArrayList<>();
+        walker.findDeadlocks(deadlocks::add);
+        assertEquals(2, deadlocks.size());
+
+        // string1 then string2 in thread1's run(), string2 then string1 in thread2's lambda
+        Deadlock deadlock = deadlocks.get(0);
+        assertEquals("string1", deadlock.getFirstLock().getName());
+        assertEquals("string2", deadlock.getSecondLock().getName());
+        assertEquals("run", deadlock.getFirstThreadStart().getName());
+        assertNotEquals(deadlock.getFirstThreadStart(), deadlock.getSecondThreadStart());
+
+        // The string list is built from the same records
+        List<String> messages = walker.findDeadlocks();
+        for ( int i=0; i<deadlocks.size(); i++)
+        {
+            assertEquals(deadlocks.get(i).getMessage(), messages.get(i));
+        }
+    }
+
     @Test
     void parseReentrantLockExample() throws FileNotFoundException, BlockParsingException {
         List<CodeBlock> codeBlocks = CodeBlockParser.parse(new File(Util.TEST_CLASS_PATH + "/ReentrantLockExample.java"));
@@ -139,4 +198,283 @@ class CodeWalkerTest {
             System.out.println(deadlockInfo);
         }
     }
+
+    @Test
+    void lockSummariesAreReused() throws FileNotFoundException, BlockParsingException {
+        List<CodeBlock> codeBlocks = CodeBlockParser.parse(new File(Util.TEST_CLASS_PATH + "/SynchronizedDeadlock.java"));
+        SymbolIndex symbolIndex = new SymbolIndex(codeBlocks);
+        ClassBlock classBlock = (ClassBlock) codeBlocks.get(0);
+        MethodBlock myMethod = classBlock.getMethodBlock("myMethod");
+        MethodBlock lockInOtherOrder = classBlock.getMethodBlock("lockInOtherOrder");
+
+        // myMethod() doesn't lock anything itself; it just calls lockInOtherOrder()
+        LockSummary summary = myMethod.getLockSummary(symbolIndex);
+        assertEquals(1, summary.getEntries().size());
+        assertTrue(summary.getEntries().get(0).isCall());
+        assertEquals(lockInOtherOrder, summary.getEntries().get(0).getCallee());
+        assertTrue(summary.getCallees().contains(lockInOtherOrder));
+
+        // Two locks and two unlocks
+        assertEquals(4, lockInOtherOrder.getLockSummary(symbolIndex).getEntries().size());
+
+        // Walking splices in the callee's summary, and doesn't rebuild ours
+        List<LockInfo> lockInfo = new ArrayList<>();
+        myMethod.walkMethod(symbolIndex, lockInfo);
+        assertEquals(4, lockInfo.size());
+        assertSame(summary, myMethod.getLockSummary(symbolIndex));
+    }
+
+    @Test
+    void symbolIndexFindsMethods() throws FileNotFoundException, BlockParsingException {
+        List<CodeBlock> codeBlocks = CodeBlockParser.parsePath(new File(Util.TEST_CLASS_PATH));
+        SymbolIndex symbolIndex = new SymbolIndex(codeBlocks);
+
+        ClassBlock classBlock = symbolIndex.getClassBlock("SynchronizedDeadlock");
+        assertNotNull(classBlock);
+        MethodBlock lockInOtherOrder = classBlock.getMethodBlock("lockInOtherOrder");
+        assertEquals(0, lockInOtherOrder.getParameterCount());
+        assertEquals(lockInOtherOrder, symbolIndex.getMethod("SynchronizedDeadlock", "lockInOtherOrder"));
+        assertEquals(lockInOtherOrder, symbolIndex.getMethod("SynchronizedDeadlock", "lockInOtherOrder", 0));
+
+        // No overload with that many arguments, so we fall back to the name
+        assertEquals(lockInOtherOrder, symbolIndex.getMethod("SynchronizedDeadlock", "lockInOtherOrder", 2));
+
+        assertEquals(1, symbolIndex.getMethod("MainClass", "main").getParameterCount());
+        assertNull(symbolIndex.getMethod("SynchronizedDeadlock", "noSuchMethod"));
+        assertNull(symbolIndex.getMethod("NoSuchClass", "lockInOtherOrder"));
+    }
+
+    @Test
+    void callsDispatchThroughTypeHierarchy() throws FileNotFoundException, BlockParsingException {
+        List<CodeBlock> codeBlocks = Util.parseTestClasses(false, "Task", "LockPair", "BaseTask", "OrderedTask",
+                                                           "ReversedTask", "CountingTask", "TaskRunner");
+        SymbolIndex symbolIndex = new SymbolIndex(codeBlocks);
+
+        TypeHierarchy typeHierarchy = symbolIndex.getTypeHierarchy();
+        assertTrue(symbolIndex.getClassBlock("Task").isInterface());
+        assertEquals(Arrays.asList("LockPair", "Task"), typeHierarchy.getSuperTypes("BaseTask"));
+        assertEquals(Collections.singletonList("BaseTask"), typeHierarchy.getSuperTypes("OrderedTask"));
+        assertEquals(4, typeHierarchy.getAllSubTypes("Task").size());
+        assertTrue(typeHierarchy.getImplementers("Task").contains("ReversedTask"));
+        assertEquals("TaskRunner", typeHierarchy.getEnclosingClass("Starter"));
+
+        // Interface calls go to every implementation, inherited methods and outer classes are found,
+        // and the answer is only worked out once
+        List<MethodBlock> targets = symbolIndex.getTargets("Task", "execute", 0);
+        assertEquals(2, targets.size());
+        assertSame(targets, symbolIndex.getTargets("Task", "execute", 0));
+        assertEquals(symbolIndex.getMethod("LockPair", "lockAB"), symbolIndex.getTargets("OrderedTask", "lockAB", 0).get(0));
+        assertEquals(symbolIndex.getMethod("TaskRunner", "begin"), symbolIndex.getTargets("Starter", "begin", 0).get(0));
+        assertTrue(symbolIndex.getTargets("TaskRunner", "noSuchMethod", 0).isEmpty());
+
+        // execute(int) doesn't override execute(), and execute() isn't inherited as execute(int)
+        assertFalse(targets.contains(symbolIndex.getMethod("CountingTask", "execute")));
+        assertEquals(Collections.singletonList(symbolIndex.getMethod("CountingTask", "execute")),
+                     symbolIndex.getTargets("CountingTask", "execute", 1));
+        assertTrue(symbolIndex.getTargets("BaseTask", "execute", 1).stream().noneMatch(targets::contains));
+
+        CodeWalker codeWalker = new CodeWalker(codeBlocks);
+        codeWalker.walkAllThreadStarts();
+        assertEquals(1, codeWalker.findDeadlocks().size());
+    }
+
+    @Test
+    void overloadsResolveBySignature() throws FileNotFoundException, BlockParsingException {
+        assertEquals("put(Map, int...)",
+                     MethodSignature.parse("public static <T> void put(final java.util.Map<String, T> map, @Named(x) int... values)", "put").toString());
+
+        List<CodeBlock> codeBlocks = Util.parseTestClasses(false, "Overloads", "LockPair", "NarrowOverloads");
+        SymbolIndex symbolIndex = new SymbolIndex(codeBlocks);
+
+        MethodBlock takeObjects = symbolIndex.getMethod("Overloads", new MethodSignature("take", new String[] {"Object", "Object"}));
+        MethodBlock takeString = symbolIndex.getMethod("Overloads", new MethodSignature("take", new String[] {"String", null}));
+        assertNotEquals(takeObjects, takeString);
+        assertEquals("take(Object, Object)", takeObjects.getSignature().toString());
+        assertEquals("take(String, Object)", takeString.getSignature().toString());
+        assertEquals(takeObjects.getSignature().getShape(), takeString.getSignature().getShape());
+        // Without types, the first overload with the right number of parameters wins
+        assertEquals(takeObjects, symbolIndex.getMethod("Overloads", "take", 2));
+
+        // A subclass overload that can't take a String is no override of take(String, Object)
+        MethodSignature stringCall = new MethodSignature("take", new String[] {"String", null});
+        assertEquals(Collections.singletonList(takeString), symbolIndex.getTargets("Overloads", stringCall));
+        assertEquals("take(Integer, Object)", symbolIndex.getMethod("NarrowOverloads", stringCall).getSignature().toString());
+
+        CodeWalker codeWalker = new CodeWalker(codeBlocks);
+        codeWalker.walkAllThreadStarts();
+        assertEquals(1, codeWalker.findDeadlocks().size());
+    }
+
+    @Test
+    void walkThreadsInParallel() throws FileNotFoundException, BlockParsingException {
+        List<CodeBlock> codeBlocks = CodeBlockParser.parsePath(new File(Util.TEST_CLASS_PATH));
+
+        CodeWalker sequentialWalker = new CodeWalker(codeBlocks);
+        sequentialWalker.walkAllThreadStarts();
+
+        // Same blocks, so the walks share (and race to build) the methods' lock summaries
+        CodeWalker parallelWalker = new CodeWalker(codeBlocks);
+        parallelWalker.walkAllThreadStarts(4);
+
+        List<String> deadlocks = sequentialWalker.findDeadlocks();
+        assertEquals(6, deadlocks.size());
+        assertEquals(deadlocks, parallelWalker.findDeadlocks());
+    }
+
+    @Test
+    void lockSetAbstractionFindsSameDeadlocks() throws FileNotFoundException, BlockParsingException {
+        List<CodeBlock> codeBlocks = CodeBlockParser.parsePath(new File(Util.TEST_CLASS_PATH));
+
+        CodeWalker fullWalker = new CodeWalker(codeBlocks);
+        fullWalker.walkAllThreadStarts();
+
+        CodeWalker abstractWalker = new CodeWalker(codeBlocks);
+        abstractWalker.setLockSetAbstraction(true);
+        abstractWalker.walkAllThreadStarts(4);
+
+        assertEquals(fullWalker.findDeadlocks(), abstractWalker.findDeadlocks());
+
+        // Taking the same two locks over and over only keeps one set
+        HeldLockSets heldLockSets = new HeldLockSets();
+        for ( int i=0; i<1000; i++)
+        {
+            heldLockSets.add(LockSymbolTable.event(0, 0, true));
+            heldLockSets.add(LockSymbolTable.event(1, 1, true));
+            heldLockSets.add(LockSymbolTable.event(2, 1, false));
+            heldLockSets.add(LockSymbolTable.event(3, 0, false));
+        }
+        heldLockSets.finish();
+        assertEquals(1, heldLockSets.size());
+        assertEquals(4000, heldLockSets.getEventCount());
+        assertEquals(1, heldLockSets.getSites(0)[1]);
+    }
+
+    @Test
+    void lazyBodiesFindSameDeadlocks() throws FileNotFoundException, BlockParsingException {
+        List<CodeBlock> codeBlocks = Util.parseTestClasses(false, "LazyBodies", "LockPair");
+        List<CodeBlock> lazyBlocks = Util.parseTestClasses(true, "LazyBodies", "LockPair");
+
+        MethodBlock loop = ((ClassBlock) lazyBlocks.get(0)).getMethodBlock("loopThenLockAB");
+        assertFalse(loop.isBodyParsed());
+        assertEquals(0, loop.getSubCodeBlocks().size());
+        assertTrue(((ClassBlock) lazyBlocks.get(1)).getMethodBlock("lockAB").isBodyParsed());
+
+        CodeWalker walker = new CodeWalker(codeBlocks);
+        walker.walkAllThreadStarts();
+        CodeWalker lazyWalker = new CodeWalker(lazyBlocks);
+        lazyWalker.walkAllThreadStarts();
+        List<String> deadlocks = walker.findDeadlocks();
+        assertEquals(1, deadlocks.size());
+        assertEquals(deadlocks, lazyWalker.findDeadlocks());
+
+        // The walk needed the loop's code, so its body is there now, same as an eager parse
+        assertTrue(loop.isBodyParsed());
+        assertEquals(1, loop.getSubCodeBlocks().size());
+    }
+
+    @Test
+    void lazyBodiesFindSameDeadlocksInAllTestClasses() throws FileNotFoundException, BlockParsingException {
+        // Anonymous threads (new Thread() { public void run() {...} }) have to be found without their bodies
+        CodeWalker walker = new CodeWalker(CodeBlockParser.parsePath(new File(Util.TEST_CLASS_PATH), 1, false));
+        walker.walkAllThreadStarts();
+        CodeWalker lazyWalker = new CodeWalker(CodeBlockParser.parsePath(new File(Util.TEST_CLASS_PATH), 1, true));
+        lazyWalker.walkAllThreadStarts();
+
+        assertEquals(walker.getThreadStarts().size(), lazyWalker.getThreadStarts().size());
+        List<String> deadlocks = walker.findDeadlocks();
+        assertEquals(6, deadlocks.size());
+        assertEquals(deadlocks, lazyWalker.findDeadlocks());
+    }
+
+    @Test
+    void deepCallChainsAreBounded() throws BlockParsingException {
+        // main() -> step0() -> ... -> step499(), and only the last one takes a lock
+        int chainLength = 500;
+        StringBuilder source = new StringBuilder();
+        source.append("public class DeepCalls {\n");
+        source.append("    private final Object lock = new Object();\n");
+        source.append("    public static void main(String[] args) {\n        step0();\n    }\n");
+        for ( int i=0; i<chainLength; i++)
+        {
+            source.append("    private void step").append(i).append("() {\n");
+            if ( i < chainLength - 1)
+            {
+                source.append("        step").append(i + 1).append("();\n");
+            }
+            else
+            {
+                source.append("        synchronized(lock) {\n            System.out.println(\"bottom\");\n        }\n");
+            }
+            source.append("    }\n");
+        }
+        source.append("}\n");
+
+        List<CodeBlock> codeBlocks = CodeBlockParser.parseContents(source.toString());
+
+        // The default depth stops well short of the lock
+        CodeWalker shallowWalker = new CodeWalker(codeBlocks);
+        shallowWalker.walkAllThreadStarts();
+        assertEquals(1, shallowWalker.getThreadStarts().size());
+        assertEquals(64, shallowWalker.getCallDepthReached());
+        assertEquals(1, shallowWalker.getPathsTruncated());
+
+        // Deep enough to get there, without running out of stack
+        CodeWalker deepWalker = new CodeWalker(codeBlocks);
+        deepWalker.setMaxCallDepth(chainLength + 1);
+        deepWalker.walkAllThreadStarts();
+        assertEquals(chainLength + 1, deepWalker.getCallDepthReached());
+        assertEquals(0, deepWalker.getPathsTruncated());
+
+        // The lock and unlock at the bottom are only found by the deep walk
+        SymbolIndex symbolIndex = new SymbolIndex(codeBlocks);
+        MethodBlock threadStart = deepWalker.getThreadStarts().get(0);
+        WalkContext shallowContext = new WalkContext(symbolIndex, new LongArrayList());
+        threadStart.walkMethod(shallowContext);
+        assertEquals(0, shallowContext.getLockEvents().size());
+        WalkContext deepContext = new WalkContext(symbolIndex, new LongArrayList(), chainLength + 1);
+        threadStart.walkMethod(deepContext);
+        assertEquals(2, deepContext.getLockEvents().size());
+    }
+
+    @Test
+    void fanOutIsBounded() throws BlockParsingException {
+        // step0() calls step1() twice, which calls step2() twice... so walking every path would enter about
+        // 2^40 methods, all well inside the depth limit
+        int chainLength = 40;
+        StringBuilder source = new StringBuilder();
+        source.append("public class FanOut {\n");
+        source.append("    private final Object lock = new Object();\n");
+        source.append("    public static void main(String[] args) {\n        step0();\n    }\n");
+        for ( int i=0; i<chainLength; i++)
+        {
+            source.append("    private void step").append(i).append("() {\n");
+            if ( i < chainLength - 1)
+            {
+                source.append("        step").append(i + 1).append("();\n");
+                source.append("        step").append(i + 1).append("();\n");
+            }
+            else
+            {
+                source.append("        synchronized(lock) {\n            System.out.println(\"bottom\");\n        }\n");
+            }
+            source.append("    }\n");
+        }
+        source.append("}\n");
+
+        List<CodeBlock> codeBlocks = CodeBlockParser.parseContents(source.toString());
+
+        // The default budget stops it, and says so
+        CodeWalker walker = new CodeWalker(codeBlocks);
+        walker.walkAllThreadStarts();
+        assertEquals(chainLength + 1, walker.getCallDepthReached());
+        assertTrue(walker.getPathsTruncated() > 0);
+
+        // The first path goes all the way down, so the lock is still found
+        SymbolIndex symbolIndex = new SymbolIndex(codeBlocks);
+        WalkContext context = new WalkContext(symbolIndex, new LongArrayList(), WalkContext.DEFAULT_MAX_DEPTH, 1000);
+        walker.getThreadStarts().get(0).walkMethod(context);
+        assertEquals(1000, context.getMethodsWalked());
+        assertTrue(context.getPathsTruncated() > 0);
+        assertTrue(context.getLockEvents().size() >= 2);
+    }
 }
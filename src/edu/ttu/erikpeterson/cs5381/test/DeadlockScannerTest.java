@@ -0,0 +1,95 @@
+package edu.ttu.erikpeterson.cs5381.test;
+
+import edu.ttu.erikpeterson.cs5381.cli.DeadlockScanner;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test the DeadlockScanner class (i.e. scan from the command line)
+ */
+class DeadlockScannerTest {
+
+    @Test
+    void scanFromCommandLine()
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        int exitCode = DeadlockScanner.run(new String[] { "--threads", "2", "--format", "json",
+                                                          "--exclude", "LockCycle*.java", Util.TEST_CLASS_PATH },
+                                           new PrintStream(out, true), new PrintStream(err, true));
+
+        assertEquals(DeadlockScanner.DEADLOCKS_FOUND, exitCode);
+        String[] lines = out.toString().trim().split("\n");
+        assertEquals(5, lines.length);
+        for ( String line : lines)
+        {
+            assertTrue(line.startsWith("{\"locks\":[{\"name\":"));
+            assertTrue(line.contains("\"message\":\"Potential deadlock between variables "));
+        }
+
+        // Nothing to scan, so nothing found
+        out.reset();
+        exitCode = DeadlockScanner.run(new String[] { "--include", "*.txt", Util.TEST_CLASS_PATH },
+                                       new PrintStream(out, true), new PrintStream(err, true));
+        assertEquals(DeadlockScanner.NO_DEADLOCKS, exitCode);
+        assertEquals("", out.toString());
+
+        assertEquals(DeadlockScanner.SCAN_FAILED,
+                     DeadlockScanner.run(new String[] { "--threads", "none" }, new PrintStream(out, true), new PrintStream(err, true)));
+    }
+
+    @Test
+    void skippedFilesCanFailTheScan() throws IOException
+    {
+        Path directory = Files.createTempDirectory("DeadlockScanner");
+        Path goodFile = directory.resolve("BasicClass.java");
+        Path brokenFile = directory.resolve("Broken.java");
+        try
+        {
+            Files.copy(Paths.get(Util.TEST_CLASS_PATH, "BasicClass.java"), goodFile);
+            Files.write(brokenFile, "public class Broken {\n    {\n}\n".getBytes("UTF-8"));
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            ByteArrayOutputStream err = new ByteArrayOutputStream();
+            assertEquals(DeadlockScanner.NO_DEADLOCKS,
+                         DeadlockScanner.run(new String[] { directory.toString() }, new PrintStream(out, true), new PrintStream(err, true)));
+            assertTrue(err.toString().contains("# 1 files couldn't be parsed"));
+
+            assertEquals(DeadlockScanner.FILES_SKIPPED,
+                         DeadlockScanner.run(new String[] { "--fail-on-skipped", directory.toString() },
+                                             new PrintStream(out, true), new PrintStream(err, true)));
+        }
+        finally
+        {
+            Files.deleteIfExists(goodFile);
+            Files.deleteIfExists(brokenFile);
+            Files.delete(directory);
+        }
+    }
+
+    @Test
+    void failuresPartWayThroughAreReported()
+    {
+        // Blows up on the first deadlock printed
+        PrintStream failingOut = new PrintStream(new ByteArrayOutputStream()) {
+            @Override
+            public void println(String line)
+            {
+                throw new IllegalStateException("Output went away");
+            }
+        };
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+
+        assertEquals(DeadlockScanner.SCAN_FAILED,
+                     DeadlockScanner.run(new String[] { Util.TEST_CLASS_PATH }, failingOut, new PrintStream(err, true)));
+        assertTrue(err.toString().contains("Output went away"));
+    }
+}
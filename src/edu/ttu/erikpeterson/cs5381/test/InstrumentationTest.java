@@ -0,0 +1,87 @@
+package edu.ttu.erikpeterson.cs5381.test;
+
+import edu.ttu.erikpeterson.cs5381.instrumentation.Instrumentation;
+import edu.ttu.erikpeterson.cs5381.parser.BlockParsingException;
+import edu.ttu.erikpeterson.cs5381.parser.block.CodeBlock;
+import edu.ttu.erikpeterson.cs5381.parser.CodeBlockParser;
+import edu.ttu.erikpeterson.cs5381.parser.CodeWalker;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.PrintStream;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test the Instrumentation class (i.e. count and time what a scan does)
+ */
+class InstrumentationTest {
+
+    @Test
+    void instrumentationRecordsEachPhase() throws FileNotFoundException, BlockParsingException {
+        ByteArrayOutputStream events = new ByteArrayOutputStream();
+        Instrumentation.reset();
+        Instrumentation.setEventStream(new PrintStream(events, true));
+        try
+        {
+            List<CodeBlock> codeBlocks = CodeBlockParser.parsePath(new File(Util.TEST_CLASS_PATH));
+            CodeWalker walker = new CodeWalker(codeBlocks);
+            walker.walkAllThreadStarts();
+            assertEquals(6, walker.findDeadlocks().size());
+
+            File[] testClasses = new File(Util.TEST_CLASS_PATH).listFiles();
+            assertNotNull(testClasses);
+            assertEquals(testClasses.length, Instrumentation.getCount(Instrumentation.Counter.FILES_PARSED));
+            assertTrue(Instrumentation.getCount(Instrumentation.Counter.BYTES_READ) > 0);
+            assertTrue(Instrumentation.getCount(Instrumentation.Counter.CALLS_RESOLVED) > 0);
+            assertTrue(Instrumentation.getCount(Instrumentation.Counter.COMBINATIONS_COMPARED) > 0);
+            assertTrue(Instrumentation.getNanos(Instrumentation.Phase.WALK_METHODS) > 0);
+            assertTrue(Instrumentation.getLockFinderMatches().get("SynchronizedLockFinder") > 0);
+
+            String summary = Instrumentation.toJson();
+            assertTrue(summary.startsWith("{\"phases\":{\"readFiles\":{\"calls\":"));
+            assertTrue(summary.contains("\"combinationsCompared\":"));
+            assertTrue(events.toString().contains("{\"event\":\"phase\",\"phase\":\"removeAllComments\""));
+        }
+        finally
+        {
+            Instrumentation.setEventStream(null);
+            Instrumentation.disable();
+            Instrumentation.reset();
+        }
+    }
+
+    @Test
+    void nothingCountedWhenDisabled() throws FileNotFoundException, BlockParsingException {
+        Instrumentation.disable();
+        Instrumentation.reset();
+
+        CodeWalker walker = new CodeWalker(CodeBlockParser.parse(new File(Util.TEST_CLASS_PATH + "/SynchronizedDeadlock.java")));
+        walker.walkAllThreadStarts();
+        assertEquals(2, walker.findDeadlocks().size());
+
+        assertEquals(0, Instrumentation.getCount(Instrumentation.Counter.FILES_PARSED));
+        assertTrue(Instrumentation.getLockFinderMatches().isEmpty());
+    }
+
+    @Test
+    void jsonIgnoresTheDefaultLocale()
+    {
+        Locale defaultLocale = Locale.getDefault();
+        Locale.setDefault(Locale.forLanguageTag("ar-EG-u-nu-arab"));
+        try
+        {
+            Instrumentation.reset();
+            // Digits from a locale like this one aren't JSON numbers
+            assertTrue(Instrumentation.toJson().matches("[\\x20-\\x7E]*"));
+        }
+        finally
+        {
+            Locale.setDefault(defaultLocale);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package edu.ttu.erikpeterson.cs5381.test;
+
+import edu.ttu.erikpeterson.cs5381.parser.BlockParsingException;
+import edu.ttu.erikpeterson.cs5381.parser.block.BlockTreeCodec;
+import edu.ttu.erikpeterson.cs5381.parser.block.ClassBlock;
+import edu.ttu.erikpeterson.cs5381.parser.block.CodeBlock;
+import edu.ttu.erikpeterson.cs5381.parser.CodeWalker;
+import edu.ttu.erikpeterson.cs5381.parser.ParseCache;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test the ParseCache class (i.e. keep parsed files between runs)
+ */
+class ParseCacheTest {
+
+    @Test
+    void parseCacheReusesUnchangedFiles() throws IOException, BlockParsingException {
+        File cacheFile = File.createTempFile("ParseCache", ".bin");
+        cacheFile.delete();
+        try
+        {
+            ParseCache parseCache = new ParseCache(cacheFile);
+            List<CodeBlock> codeBlocks = parseCache.parsePath(new File(Util.TEST_CLASS_PATH));
+            assertEquals(16, parseCache.getFilesParsed());
+            assertEquals(0, parseCache.getFilesReused());
+
+            CodeWalker walker = new CodeWalker(codeBlocks);
+            walker.walkAllThreadStarts();
+            List<String> deadlocks = walker.findDeadlocks();
+            parseCache.save();
+
+            // Nothing changed, so everything (lock summaries included) comes from the cache
+            ParseCache reloadedCache = new ParseCache(cacheFile);
+            List<CodeBlock> cachedCodeBlocks = reloadedCache.parsePath(new File(Util.TEST_CLASS_PATH));
+            assertEquals(0, reloadedCache.getFilesParsed());
+            assertEquals(16, reloadedCache.getFilesReused());
+            assertEquals(codeBlocks.size(), cachedCodeBlocks.size());
+            for ( int i=0; i<codeBlocks.size(); i++)
+            {
+                assertEquals(codeBlocks.get(i).getName(), cachedCodeBlocks.get(i).getName());
+                assertEquals(((ClassBlock) codeBlocks.get(i)).getClassVariables(),
+                             ((ClassBlock) cachedCodeBlocks.get(i)).getClassVariables());
+            }
+
+            CodeWalker cachedWalker = new CodeWalker(cachedCodeBlocks);
+            assertEquals(walker.getThreadStarts().size(), cachedWalker.getThreadStarts().size());
+            cachedWalker.walkAllThreadStarts();
+            assertEquals(deadlocks, cachedWalker.findDeadlocks());
+        }
+        finally
+        {
+            cacheFile.delete();
+        }
+    }
+
+    @Test
+    void unreadableCacheIsReported() throws IOException, BlockParsingException {
+        File cacheFile = File.createTempFile("ParseCache", ".bin");
+        try
+        {
+            Files.write(cacheFile.toPath(), "not a cache".getBytes("UTF-8"));
+
+            ByteArrayOutputStream errors = new ByteArrayOutputStream();
+            ParseCache parseCache = new ParseCache(cacheFile, new PrintStream(errors, true));
+            assertTrue(errors.toString().contains(cacheFile.getAbsolutePath()));
+
+            // Starts from scratch instead
+            parseCache.parsePath(new File(Util.TEST_CLASS_PATH + "/BasicClass.java"));
+            assertEquals(1, parseCache.getFilesParsed());
+            assertEquals(0, parseCache.getFilesReused());
+        }
+        finally
+        {
+            cacheFile.delete();
+        }
+    }
+
+    @Test
+    void damagedEntriesAreRejected()
+    {
+        // A five byte number that comes out negative
+        byte[] negativeLength = { (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x0F };
+        assertThrows(IOException.class, () -> BlockTreeCodec.read(new DataInputStream(new ByteArrayInputStream(negativeLength))));
+
+        // Contents "{}", then one block whose '{' offset overflows to before its start
+        byte[] badPositions = { 2, '{', '}', 1, 0, 0, 1, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07, 1, 0 };
+        assertThrows(IOException.class, () -> BlockTreeCodec.read(new DataInputStream(new ByteArrayInputStream(badPositions))));
+    }
+}
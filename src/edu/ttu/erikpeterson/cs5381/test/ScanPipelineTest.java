@@ -0,0 +1,66 @@
+package edu.ttu.erikpeterson.cs5381.test;
+
+import edu.ttu.erikpeterson.cs5381.parser.BlockParsingException;
+import edu.ttu.erikpeterson.cs5381.parser.block.CodeBlock;
+import edu.ttu.erikpeterson.cs5381.parser.CodeBlockParser;
+import edu.ttu.erikpeterson.cs5381.parser.CodeWalker;
+import edu.ttu.erikpeterson.cs5381.parser.ScanPipeline;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.PrintStream;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test the ScanPipeline class (i.e. read, parse and index files at the same time)
+ */
+class ScanPipelineTest {
+
+    @Test
+    void scanPipelineMatchesParsePath() throws FileNotFoundException, BlockParsingException {
+        File[] testClasses = new File(Util.TEST_CLASS_PATH).listFiles();
+        assertNotNull(testClasses);
+
+        // Tiny queues, so the stages have to wait on each other
+        ScanPipeline pipeline = new ScanPipeline(2, 3, 1);
+        pipeline.start();
+        for ( File testClass : testClasses)
+        {
+            pipeline.addFile(testClass);
+        }
+        List<CodeBlock> pipelineBlocks = pipeline.finish();
+
+        List<CodeBlock> codeBlocks = CodeBlockParser.parsePath(new File(Util.TEST_CLASS_PATH));
+        assertEquals(codeBlocks.size(), pipelineBlocks.size());
+        for ( int i=0; i<codeBlocks.size(); i++)
+        {
+            assertEquals(codeBlocks.get(i).getName(), pipelineBlocks.get(i).getName());
+        }
+
+        CodeWalker walker = new CodeWalker(codeBlocks);
+        walker.walkAllThreadStarts();
+        CodeWalker pipelineWalker = new CodeWalker(pipelineBlocks);
+        pipelineWalker.walkAllThreadStarts(4);
+        assertEquals(walker.findDeadlocks(), pipelineWalker.findDeadlocks());
+
+        // A missing file fails the whole thing, unless we asked for it to be skipped
+        ScanPipeline failingPipeline = new ScanPipeline(1, 1, 4);
+        failingPipeline.start();
+        failingPipeline.addFile(testClasses[0]);
+        failingPipeline.addFile(new File(Util.TEST_CLASS_PATH, "NoSuchFile.java"));
+        assertThrows(FileNotFoundException.class, failingPipeline::finish);
+
+        ByteArrayOutputStream errors = new ByteArrayOutputStream();
+        ScanPipeline skippingPipeline = new ScanPipeline(1, 1, 4);
+        skippingPipeline.setErrorOutput(new PrintStream(errors, true));
+        skippingPipeline.start();
+        skippingPipeline.addFile(new File(Util.TEST_CLASS_PATH, "NoSuchFile.java"));
+        skippingPipeline.addFile(testClasses[0]);
+        assertFalse(skippingPipeline.finish().isEmpty());
+        assertTrue(errors.toString().contains("NoSuchFile.java"));
+    }
+}
@@ -1,6 +1,32 @@
 package edu.ttu.erikpeterson.cs5381.test;
 
+import edu.ttu.erikpeterson.cs5381.parser.BlockParsingException;
+import edu.ttu.erikpeterson.cs5381.parser.block.CodeBlock;
+import edu.ttu.erikpeterson.cs5381.parser.CodeBlockParser;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.util.ArrayList;
+import java.util.List;
+
 class Util {
 
     static final String TEST_CLASS_PATH = "src/edu/ttu/erikpeterson/cs5381/test/testClasses";
+
+    /**
+     * Parse some of the test classes together
+     *
+     * @param lazyBodies True to leave method bodies for later where we can
+     * @param classNames Test classes to parse (file names without the .java)
+     * @return The blocks in all of them
+     */
+    static List<CodeBlock> parseTestClasses(boolean lazyBodies, String... classNames) throws FileNotFoundException, BlockParsingException
+    {
+        List<CodeBlock> codeBlocks = new ArrayList<>();
+        for ( String className : classNames)
+        {
+            codeBlocks.addAll(CodeBlockParser.parse(new File(TEST_CLASS_PATH, className + ".java"), lazyBodies));
+        }
+        return codeBlocks;
+    }
 }
@@ -0,0 +1,54 @@
+package edu.ttu.erikpeterson.cs5381.test;
+
+import edu.ttu.erikpeterson.cs5381.daemon.WatchDaemon;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test the WatchDaemon class (i.e. re-analyze a directory as its files change)
+ */
+class WatchDaemonTest {
+
+    @Test
+    void watchDaemonPicksUpChanges() throws IOException {
+        Path directory = Files.createTempDirectory("WatchDaemon");
+        Path sourceFile = directory.resolve("Watched.java");
+        try
+        {
+            Files.copy(Paths.get(Util.TEST_CLASS_PATH, "SynchronizedDeadlock.java"), sourceFile);
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            WatchDaemon daemon = new WatchDaemon(directory, new PrintStream(output, true), 1);
+
+            daemon.loadAll();
+            assertEquals(5, daemon.getThreadStartCount());
+            assertEquals(2, daemon.getDeadlocks().size());
+
+            Files.copy(Paths.get(Util.TEST_CLASS_PATH, "ReentrantLockExample.java"), sourceFile, StandardCopyOption.REPLACE_EXISTING);
+            daemon.update(Collections.singletonList(sourceFile));
+            assertEquals(2, daemon.getThreadStartCount());
+            assertEquals(1, daemon.getDeadlocks().size());
+
+            Files.delete(sourceFile);
+            daemon.update(Collections.singletonList(sourceFile));
+            assertEquals(0, daemon.getThreadStartCount());
+            assertEquals(0, daemon.getDeadlocks().size());
+
+            assertTrue(output.toString().contains("# analysis 3: 0 files"));
+        }
+        finally
+        {
+            Files.deleteIfExists(sourceFile);
+            Files.delete(directory);
+        }
+    }
+}
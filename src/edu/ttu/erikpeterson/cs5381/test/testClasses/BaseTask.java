@@ -0,0 +1,4 @@
+package edu.ttu.erikpeterson.cs5381.test.testClasses;
+
+public abstract class BaseTask extends LockPair implements Task {
+}
@@ -0,0 +1,12 @@
+package edu.ttu.erikpeterson.cs5381.test.testClasses;
+
+public abstract class CountingTask extends BaseTask {
+
+    // Not an override of execute(), so a call to Task.execute() can't end up here
+    public void execute(int times) {
+        for ( int i=0; i<times; i++)
+        {
+            lockBA();
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package edu.ttu.erikpeterson.cs5381.test.testClasses;
+
+public class LazyBodies extends LockPair {
+
+    private Thread thread1 = new Thread(() -> {
+        loopThenLockAB();
+    });
+
+    private Thread thread2 = new Thread(() -> {
+        loopThenLockBA();
+    });
+
+    // The loops only call methods that lock, so they can be left for later
+    private void loopThenLockAB() {
+        for ( int i=0; i<10; i++)
+        {
+            lockAB();
+        }
+    }
+
+    private void loopThenLockBA() {
+        for ( int i=0; i<10; i++)
+        {
+            lockBA();
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package edu.ttu.erikpeterson.cs5381.test.testClasses;
+
+public class LockCycleExample {
+    private final Object lock1 = new Object();
+    private final Object lock2 = new Object();
+    private final Object lock3 = new Object();
+
+    //----------------------------------------------
+    // Deadlock with three variables: no two threads
+    // take the same pair of locks in opposite orders
+    //----------------------------------------------
+
+    private Thread thread1 = new Thread(() -> {
+        synchronized(lock1)
+        {
+            synchronized(lock2)
+            {
+                System.out.println("1 then 2");
+            }
+        }
+    });
+
+    private Thread thread2 = new Thread(() -> {
+        synchronized(lock2)
+        {
+            synchronized(lock3)
+            {
+                System.out.println("2 then 3");
+            }
+        }
+    });
+
+    private Thread thread3 = new Thread(() -> {
+        synchronized(lock3)
+        {
+            synchronized(lock1)
+            {
+                System.out.println("3 then 1");
+            }
+        }
+    });
+}
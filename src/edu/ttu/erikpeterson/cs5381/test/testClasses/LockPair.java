@@ -0,0 +1,23 @@
+package edu.ttu.erikpeterson.cs5381.test.testClasses;
+
+public abstract class LockPair {
+
+    protected final Object lockA = new Object();
+    protected final Object lockB = new Object();
+
+    protected void lockAB() {
+        synchronized(lockA) {
+            synchronized(lockB) {
+                System.out.println("A then B");
+            }
+        }
+    }
+
+    protected void lockBA() {
+        synchronized(lockB) {
+            synchronized(lockA) {
+                System.out.println("B then A");
+            }
+        }
+    }
+}
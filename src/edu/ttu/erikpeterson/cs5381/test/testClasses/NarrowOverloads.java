@@ -0,0 +1,9 @@
+package edu.ttu.erikpeterson.cs5381.test.testClasses;
+
+public class NarrowOverloads extends Overloads {
+
+    // Same number of parameters as Overloads.take, but it doesn't take a String so it's no override of take(String, Object)
+    public void take(Integer count, Object second) {
+        lockAB();
+    }
+}
@@ -0,0 +1,22 @@
+package edu.ttu.erikpeterson.cs5381.test.testClasses;
+
+public class Overloads extends LockPair {
+
+    // Both calls have two arguments; only the argument types say which overload each one runs
+    private Thread thread1 = new Thread(() -> {
+        take(lockA, lockB);
+    });
+
+    private Thread thread2 = new Thread(() -> {
+        String name = lockA.toString();
+        take(name, lockA);
+    });
+
+    private void take(Object first, Object second) {
+        lockAB();
+    }
+
+    private void take(String name, Object second) {
+        lockBA();
+    }
+}
@@ -0,0 +1,8 @@
+package edu.ttu.erikpeterson.cs5381.test.testClasses;
+
+public class ReversedTask extends BaseTask {
+
+    public void execute() {
+        lockBA();
+    }
+}
@@ -0,0 +1,5 @@
+package edu.ttu.erikpeterson.cs5381.test.testClasses;
+
+public interface Task {
+    void execute();
+}
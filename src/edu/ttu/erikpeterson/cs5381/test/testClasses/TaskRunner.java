@@ -0,0 +1,20 @@
+package edu.ttu.erikpeterson.cs5381.test.testClasses;
+
+public class TaskRunner {
+
+    private Task task;
+
+    // Only calls Task.execute(); the locks are in the implementations
+    private Thread thread1 = new Thread(() -> {
+        task.execute();
+    });
+
+    private void begin() {
+    }
+
+    private class Starter {
+        public void start() {
+            begin();
+        }
+    }
+}